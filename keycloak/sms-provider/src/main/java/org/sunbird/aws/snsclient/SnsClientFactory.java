@@ -1,28 +1,84 @@
 package org.sunbird.aws.snsclient;
 
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
-import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.amazonaws.services.sns.AmazonSNSAsyncClientBuilder;
 import com.amazonaws.services.sns.model.SetSMSAttributesRequest;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by nickpack on 09/08/2017.
+ *
+ * Clients are cached per credentials and region. The SMS attributes of a client are set once,
+ * when it is created, so this should be called when a provider is configured rather than on the
+ * first send.
  */
 // TODO(shriharshs): Create an interface for the SMS client factories
 public class SnsClientFactory {
-    private static AmazonSNSClient snsClient = null;
+    private static Logger logger = Logger.getLogger(SnsClientFactory.class);
+
+    public static final String DEFAULT_REGION = Regions.AP_SOUTHEAST_1.getName();
 
-    public static AmazonSNSClient getSnsClient(String clientToken, String clientSecret) {
-        if (null == snsClient) {
-            BasicAWSCredentials CREDENTIALS = new BasicAWSCredentials(clientToken, clientSecret);
-            snsClient = new AmazonSNSClient(CREDENTIALS).withRegion(Region.getRegion(Regions.AP_SOUTHEAST_1));
+    private static final Map<ClientKey, AmazonSNSAsync> snsClients = new ConcurrentHashMap<>();
 
-            SetSMSAttributesRequest setRequest = new SetSMSAttributesRequest()
-                    .addAttributesEntry("DefaultSMSType", "Transactional");
+    public static AmazonSNSAsync getSnsClient(String clientToken, String clientSecret) {
+        return getSnsClient(clientToken, clientSecret, DEFAULT_REGION);
+    }
 
+    public static AmazonSNSAsync getSnsClient(String clientToken, String clientSecret, String region) {
+        return snsClients.computeIfAbsent(new ClientKey(clientToken, clientSecret, region), SnsClientFactory::createClient);
+    }
+
+    private static AmazonSNSAsync createClient(ClientKey key) {
+        logger.info("SnsClientFactory@createClient - creating SNS client for region " + key.region);
+        AmazonSNSAsync snsClient = AmazonSNSAsyncClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(key.clientToken, key.clientSecret)))
+                .withRegion(key.region)
+                .build();
+
+        SetSMSAttributesRequest setRequest = new SetSMSAttributesRequest()
+                .addAttributesEntry("DefaultSMSType", "Transactional");
+        try {
             snsClient.setSMSAttributes(setRequest);
+        } catch (RuntimeException e) {
+            // Messages are still sent, with the account's default SMS type
+            logger.error("SnsClientFactory@createClient - could not set SMS attributes", e);
         }
         return snsClient;
     }
+
+    private static final class ClientKey {
+        private final String clientToken;
+        private final String clientSecret;
+        private final String region;
+
+        ClientKey(String clientToken, String clientSecret, String region) {
+            this.clientToken = clientToken;
+            this.clientSecret = clientSecret;
+            this.region = region;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return clientToken.equals(other.clientToken) && clientSecret.equals(other.clientSecret)
+                    && region.equals(other.region);
+        }
+
+        @Override
+        public int hashCode() {
+            return (clientToken.hashCode() * 31 + clientSecret.hashCode()) * 31 + region.hashCode();
+        }
+    }
 }
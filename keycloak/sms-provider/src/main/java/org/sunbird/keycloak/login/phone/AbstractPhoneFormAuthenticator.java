@@ -56,6 +56,14 @@ public abstract class AbstractPhoneFormAuthenticator extends AbstractUsernameFor
     context.getAuthenticationSession()
         .setAuthNote(AbstractPhoneFormAuthenticator.ATTEMPTED_USERNAME, username);
 
+    // Throttled identifiers and IPs are rejected before the user service is called
+    String ip = context.getConnection().getRemoteAddr();
+    if (LoginFailureGate.isBlocked(context.getRealm(), username, ip)) {
+      context.getEvent().error(Errors.USER_TEMPORARILY_DISABLED);
+      context.forceChallenge(temporarilyDisabledUser(context));
+      return false;
+    }
+
     UserModel user = null;
     try {
       
@@ -83,12 +91,15 @@ public abstract class AbstractPhoneFormAuthenticator extends AbstractUsernameFor
     }
 
     if (invalidUser(context, user)) {
+      LoginFailureGate.recordFailure(context.getRealm(), username, ip);
       return false;
     }
 
     if (!validatePassword(context, user, inputData)) {
+      LoginFailureGate.recordFailure(context.getRealm(), username, ip);
       return false;
     }
+    LoginFailureGate.recordSuccess(context.getRealm(), username);
 
     if (!enabledUser(context, user)) {
       return false;
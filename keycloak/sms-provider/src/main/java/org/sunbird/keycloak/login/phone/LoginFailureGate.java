@@ -0,0 +1,117 @@
+package org.sunbird.keycloak.login.phone;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+import org.keycloak.common.util.Time;
+import org.keycloak.models.RealmModel;
+import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer;
+import org.sunbird.utils.LockoutTable;
+
+/**
+ * Throttles phone and password logins per submitted identifier and per client IP before the user
+ * is looked up, so repeated failures stop reaching the user service.
+ *
+ * Failures are counted in a node local {@link LockoutTable} using the brute force settings of the realm: once an
+ * identifier fails the failure factor number of times within the max delta time, it is blocked
+ * for the wait increment times the number of lockouts, up to the max wait. An IP is blocked the
+ * same way after sunbird_login_ip_failure_factor failures, which defaults to a higher value since
+ * many users can share an IP. Nothing is counted when brute force detection is off for the realm.
+ */
+class LoginFailureGate {
+
+  private static Logger logger = Logger.getLogger(LoginFailureGate.class);
+
+  private static final int MAX_TRACKED_KEYS = 100000;
+  private static final int DEFAULT_IP_FAILURE_FACTOR = 100;
+
+  private static final LockoutTable<Failures> FAILURES =
+      new LockoutTable<>(MAX_TRACKED_KEYS, failures -> failures.lockedUntil);
+  private static final int IP_FAILURE_FACTOR = getIpFailureFactor();
+
+  private LoginFailureGate() {}
+
+  static boolean isBlocked(RealmModel realm, String identifier, String ip) {
+    if (!realm.isBruteForceProtected()) {
+      return false;
+    }
+    long now = Time.currentTimeMillis();
+    return isLocked(identifierKey(realm, identifier), now)
+        || (ip != null && IP_FAILURE_FACTOR > 0 && isLocked(ipKey(realm, ip), now));
+  }
+
+  static void recordFailure(RealmModel realm, String identifier, String ip) {
+    if (!realm.isBruteForceProtected()) {
+      return;
+    }
+    record(realm, identifierKey(realm, identifier), realm.getFailureFactor());
+    if (ip != null && IP_FAILURE_FACTOR > 0) {
+      record(realm, ipKey(realm, ip), IP_FAILURE_FACTOR);
+    }
+  }
+
+  static void recordSuccess(RealmModel realm, String identifier) {
+    if (realm.isBruteForceProtected()) {
+      FAILURES.remove(identifierKey(realm, identifier));
+    }
+  }
+
+  private static boolean isLocked(String key, long now) {
+    Failures failures = FAILURES.get(key, now);
+    return failures != null && failures.lockedUntil > now;
+  }
+
+  private static void record(RealmModel realm, String key, int failureFactor) {
+    long windowMillis = realm.getMaxDeltaTimeSeconds() * 1000L;
+    long maxWaitMillis = realm.getMaxFailureWaitSeconds() * 1000L;
+    long waitIncrementMillis = realm.getWaitIncrementSeconds() * 1000L;
+    long now = Time.currentTimeMillis();
+    FAILURES.update(key, current -> {
+      Failures failures = current == null
+          || (now - current.firstFailureAt > windowMillis && current.lockedUntil <= now)
+              ? new Failures(0, now, 0L) : current;
+      int count = failures.count + 1;
+      long lockedUntil = failures.lockedUntil;
+      if (failureFactor > 0 && count % failureFactor == 0) {
+        lockedUntil = now + Math.min(maxWaitMillis, waitIncrementMillis * (count / failureFactor));
+        logger.debug("LoginFailureGate@record - blocking " + key + " after " + count + " failures");
+      }
+      return new Failures(count, failures.firstFailureAt, lockedUntil);
+    }, now, Math.max(windowMillis, maxWaitMillis));
+  }
+
+  // Every form of a phone number counts against the same key
+  private static String identifierKey(RealmModel realm, String identifier) {
+    long phone = PhoneNumberNormalizer.toE164(identifier);
+    return realm.getId() + ":u:" + (phone >= 0 ? "+" + phone : identifier.toLowerCase());
+  }
+
+  private static String ipKey(RealmModel realm, String ip) {
+    return realm.getId() + ":ip:" + ip;
+  }
+
+  private static int getIpFailureFactor() {
+    String factor = System.getenv(Constants.LOGIN_IP_FAILURE_FACTOR);
+    if (StringUtils.isNotBlank(factor)) {
+      try {
+        return Integer.parseInt(factor.trim());
+      } catch (NumberFormatException e) {
+        logger.error("LoginFailureGate: invalid value " + factor + " for "
+            + Constants.LOGIN_IP_FAILURE_FACTOR);
+      }
+    }
+    return DEFAULT_IP_FAILURE_FACTOR;
+  }
+
+  private static class Failures {
+    private final int count;
+    private final long firstFailureAt;
+    private final long lockedUntil;
+
+    Failures(int count, long firstFailureAt, long lockedUntil) {
+      this.count = count;
+      this.firstFailureAt = firstFailureAt;
+      this.lockedUntil = lockedUntil;
+    }
+  }
+}
@@ -30,6 +30,7 @@ import org.keycloak.models.UserModel;
 import org.keycloak.protocol.oidc.OIDCLoginProtocol;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.services.managers.AuthenticationManager;
+import org.sunbird.keycloak.storage.spi.UserService;
 
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
@@ -75,6 +76,8 @@ public class PhonePasswordForm extends AbstractPhoneFormAuthenticator implements
                 formData.add(AuthenticationManager.FORM_USERNAME, rememberMeUsername);
                 formData.add("rememberMe", "on");
             }
+            // Resolve the user while the page is shown, the submitted form then finds it cached
+            UserService.prefetchByUsername(loginHint != null ? loginHint : rememberMeUsername);
         }
         Response challengeResponse = challenge(context, formData);
         context.challenge(challengeResponse);
@@ -18,6 +18,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.services.ServicesLogger;
 import org.keycloak.services.messages.Messages;
+import org.sunbird.keycloak.resetcredential.sms.ContactPoints;
 import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticator;
 import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
 import org.sunbird.keycloak.utils.Constants;
@@ -130,6 +131,8 @@ public class ResetCredentialChooseUserAuthenticator implements Authenticator {
     } else if (!user.isEnabled()) {
       event.clone().detail(Details.USERNAME, username).user(user).error(Errors.USER_DISABLED);
     } else {
+      // The user was just loaded with its attributes, the OTP step reads them from the session
+      ContactPoints.store(context.getAuthenticationSession(), user);
       context.setUser(user);
     }
 
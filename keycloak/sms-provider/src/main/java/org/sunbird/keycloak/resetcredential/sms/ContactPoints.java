@@ -0,0 +1,108 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.apache.commons.lang3.StringUtils;
+import org.keycloak.models.UserModel;
+import org.keycloak.sessions.AuthenticationSessionModel;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
+
+import java.util.List;
+
+/**
+ * Phone number and email of the user resetting their password, resolved once by the choose user
+ * step and carried to the OTP step in a single authentication session note.
+ *
+ * The note holds the user id, phone and email separated by line breaks, which can not occur in
+ * any of them. It is replicated with the authentication session, so whichever node runs the next
+ * step reads it without querying user storage again. A note written for another user is ignored.
+ */
+public final class ContactPoints {
+
+    private static final char SEPARATOR = '\n';
+
+    private final String userId;
+    private final String phone;
+    private final String email;
+
+    private ContactPoints(String userId, String phone, String email) {
+        this.userId = userId;
+        this.phone = phone;
+        this.email = email;
+    }
+
+    public static ContactPoints of(UserModel user) {
+        List<String> phones = user.getAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE);
+        String phone = phones != null && !phones.isEmpty()
+                ? normalizePhone(phones.get(0), user.getFirstAttribute(KeycloakSmsAuthenticatorConstants.ATTR_COUNTRY_CODE))
+                : null;
+        String email = StringUtils.isNotBlank(user.getEmail()) ? user.getEmail().trim() : null;
+        return new ContactPoints(user.getId(), phone, email);
+    }
+
+    /**
+     * Stores the contact points of the user in the authentication session.
+     */
+    public static ContactPoints store(AuthenticationSessionModel authSession, UserModel user) {
+        ContactPoints contactPoints = of(user);
+        authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CONTACT_POINTS, contactPoints.encode());
+        return contactPoints;
+    }
+
+    /**
+     * Returns the contact points stored for the user, or resolves and stores them if the session
+     * has none for this user.
+     */
+    public static ContactPoints get(AuthenticationSessionModel authSession, UserModel user) {
+        ContactPoints stored = decode(authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_CONTACT_POINTS));
+        if (stored != null && stored.userId.equals(user.getId())) {
+            return stored;
+        }
+        return store(authSession, user);
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    private String encode() {
+        return userId + SEPARATOR + StringUtils.defaultString(phone) + SEPARATOR + StringUtils.defaultString(email);
+    }
+
+    private static ContactPoints decode(String note) {
+        if (note == null) {
+            return null;
+        }
+        int first = note.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : note.indexOf(SEPARATOR, first + 1);
+        if (second < 0) {
+            return null;
+        }
+        return new ContactPoints(note.substring(0, first),
+                StringUtils.trimToNull(note.substring(first + 1, second)),
+                StringUtils.trimToNull(note.substring(second + 1)));
+    }
+
+    // Stored phones have no country code, the gateways route on the E.164 form. Numbers that do
+    // not parse only lose the separators people type in them.
+    private static String normalizePhone(String phone, String countryCode) {
+        if (phone == null) {
+            return null;
+        }
+        PhoneNumber number = PhoneNumberNormalizer.normalizeStored(phone, countryCode);
+        if (number != null) {
+            return number.toString();
+        }
+        StringBuilder normalized = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if ((c >= '0' && c <= '9') || (c == '+' && normalized.length() == 0)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.length() == 0 ? null : normalized.toString();
+    }
+}
@@ -0,0 +1,232 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.persistence.EntityManager;
+import org.jboss.logging.Logger;
+import org.keycloak.common.util.Time;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.cache.UserCache;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.storage.adapter.InMemoryUserAdapter;
+import org.keycloak.timer.ScheduledTask;
+
+/**
+ * Deletes OTP credentials (sms-auth.code and sms-auth.exp-time) whose code expired more than the
+ * retention period ago, from both the local and the federated user credential tables.
+ *
+ * A code expires at the time stored in the sms-auth.exp-time credential of its user; when that is
+ * missing or older than the code, the code is taken to expire when it was issued. Rows are scanned
+ * in bounded batches, each in its own transaction, so a large backlog never holds long locks on
+ * the credential tables. Each table gets its own batch budget per run, and a run that uses it up
+ * leaves a cursor behind, so the next run on this node resumes where it stopped instead of
+ * rescanning the head of the table. The bulk deletes bypass the user cache, so every purged user
+ * is evicted from it by id afterwards. Run through a ClusterAwareScheduledTaskRunner, only one
+ * node of the cluster purges per interval.
+ */
+public class ExpiredSmsCodePurgeTask implements ScheduledTask {
+
+    private static Logger logger = Logger.getLogger(ExpiredSmsCodePurgeTask.class);
+
+    private static final List<String> CREDENTIAL_TYPES = Arrays.asList(
+            KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE,
+            KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_EXP_TIME);
+
+    private static final CredentialTable LOCAL = new CredentialTable("CredentialEntity",
+            "CredentialAttributeEntity", "c.user.id", "c.user.realmId");
+    private static final CredentialTable FEDERATED = new CredentialTable("FederatedUserCredentialEntity",
+            "FederatedUserCredentialAttributeEntity", "c.userId", "c.realmId");
+
+    private final long retentionMillis;
+    private final int batchSize;
+    private final int maxBatches;
+    // Credential id each table scan resumes after, empty to start from the beginning
+    private final Map<CredentialTable, String> cursors = new ConcurrentHashMap<>();
+
+    public ExpiredSmsCodePurgeTask(long retentionMillis, int batchSize, int maxBatches) {
+        this.retentionMillis = retentionMillis;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public void run(KeycloakSession session) {
+        long cutoff = Time.currentTimeMillis() - retentionMillis;
+        PurgeStats stats = new PurgeStats();
+
+        purge(session, LOCAL, cutoff, stats);
+        purge(session, FEDERATED, cutoff, stats);
+
+        if (stats.rows > 0) {
+            logger.info("ExpiredSmsCodePurgeTask: purged " + stats.rows + " rows in " + stats.batches
+                    + " batches, avg batch " + (stats.totalMillis / stats.batches) + " ms, max batch "
+                    + stats.maxMillis + " ms");
+        } else {
+            logger.debug("ExpiredSmsCodePurgeTask: nothing to purge");
+        }
+    }
+
+    private void purge(KeycloakSession session, CredentialTable table, long cutoff, PurgeStats stats) {
+        AtomicReference<BatchResult> result = new AtomicReference<>();
+        String after = cursors.getOrDefault(table, "");
+        int batches = 0;
+        do {
+            if (batches++ >= maxBatches) {
+                logger.info("ExpiredSmsCodePurgeTask: reached " + maxBatches + " batches on " + table.entity
+                        + ", continuing next run");
+                cursors.put(table, after);
+                return;
+            }
+            long start = System.currentTimeMillis();
+            String from = after;
+            KeycloakModelUtils.runJobInTransaction(session.getKeycloakSessionFactory(),
+                    batchSession -> result.set(purgeBatch(batchSession, table, from, cutoff)));
+            stats.record(result.get().purgedRows, System.currentTimeMillis() - start);
+            evict(session, result.get().purgedUsers);
+            after = result.get().lastId;
+        } while (result.get().scanned == batchSize);
+        cursors.remove(table);
+    }
+
+    // Scans the next batch of codes after the given credential id and deletes the expired ones
+    private BatchResult purgeBatch(KeycloakSession session, CredentialTable table, String after, long cutoff) {
+        EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+
+        List<Object[]> codes = em.createQuery("select c.id, " + table.userId + ", " + table.realmId
+                + ", c.createdDate from " + table.entity + " c where c.type = :type and c.id > :after order by c.id",
+                Object[].class)
+                .setParameter("type", KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE)
+                .setParameter("after", after)
+                .setMaxResults(batchSize)
+                .getResultList();
+        if (codes.isEmpty()) {
+            return new BatchResult(0, after, 0, Collections.emptyMap());
+        }
+        String lastId = (String) codes.get(codes.size() - 1)[0];
+
+        Set<String> userIds = new HashSet<>();
+        for (Object[] code : codes) {
+            userIds.add((String) code[1]);
+        }
+        Map<String, String> expiries = new HashMap<>();
+        for (Object[] expiry : em.createQuery("select " + table.userId + ", c.value from " + table.entity
+                + " c where c.type = :type and " + table.userId + " in :userIds", Object[].class)
+                .setParameter("type", KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_EXP_TIME)
+                .setParameter("userIds", userIds)
+                .getResultList()) {
+            expiries.put((String) expiry[0], (String) expiry[1]);
+        }
+
+        // User id to realm id of the users whose code expired before the cutoff
+        Map<String, String> expiredUsers = new HashMap<>();
+        for (Object[] code : codes) {
+            String userId = (String) code[1];
+            if (getExpiringAt(expiries.get(userId), (Long) code[3]) < cutoff) {
+                expiredUsers.put(userId, (String) code[2]);
+            }
+        }
+        if (expiredUsers.isEmpty()) {
+            return new BatchResult(codes.size(), lastId, 0, Collections.emptyMap());
+        }
+
+        List<String> ids = em.createQuery("select c.id from " + table.entity + " c where c.type in :types and "
+                + table.userId + " in :userIds", String.class)
+                .setParameter("types", CREDENTIAL_TYPES)
+                .setParameter("userIds", expiredUsers.keySet())
+                .getResultList();
+        em.createQuery("delete from " + table.attributeEntity + " a where a.credential.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        int purged = em.createQuery("delete from " + table.entity + " c where c.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        return new BatchResult(codes.size(), lastId, purged, expiredUsers);
+    }
+
+    // A missing, unreadable or stale expiry falls back to the issue time of the code
+    private static long getExpiringAt(String expTime, Long createdDate) {
+        long issuedAt = createdDate == null ? 0L : createdDate;
+        if (expTime != null) {
+            try {
+                long expiringAt = Long.parseLong(expTime.trim());
+                if (expiringAt >= issuedAt) {
+                    return expiringAt;
+                }
+            } catch (NumberFormatException e) {
+                // falls back to the issue time
+            }
+        }
+        return issuedAt;
+    }
+
+    // The cached user carries its code credential, drop it so the purged code is not accepted. The
+    // cache only needs the id to invalidate the user, so it is not loaded from storage for that.
+    private static void evict(KeycloakSession session, Map<String, String> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        KeycloakModelUtils.runJobInTransaction(session.getKeycloakSessionFactory(), evictSession -> {
+            UserCache userCache = evictSession.userCache();
+            if (userCache == null) {
+                return;
+            }
+            for (Map.Entry<String, String> entry : users.entrySet()) {
+                RealmModel realm = evictSession.realms().getRealm(entry.getValue());
+                if (realm != null) {
+                    userCache.evict(realm, new InMemoryUserAdapter(evictSession, realm, entry.getKey()));
+                }
+            }
+        });
+    }
+
+    private static class CredentialTable {
+        private final String entity;
+        private final String attributeEntity;
+        private final String userId;
+        private final String realmId;
+
+        CredentialTable(String entity, String attributeEntity, String userId, String realmId) {
+            this.entity = entity;
+            this.attributeEntity = attributeEntity;
+            this.userId = userId;
+            this.realmId = realmId;
+        }
+    }
+
+    private static class BatchResult {
+        private final int scanned;
+        private final String lastId;
+        private final int purgedRows;
+        private final Map<String, String> purgedUsers;
+
+        BatchResult(int scanned, String lastId, int purgedRows, Map<String, String> purgedUsers) {
+            this.scanned = scanned;
+            this.lastId = lastId;
+            this.purgedRows = purgedRows;
+            this.purgedUsers = purgedUsers;
+        }
+    }
+
+    private static class PurgeStats {
+        private int rows;
+        private int batches;
+        private long totalMillis;
+        private long maxMillis;
+
+        void record(int purgedRows, long millis) {
+            rows += purgedRows;
+            batches++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+    }
+}
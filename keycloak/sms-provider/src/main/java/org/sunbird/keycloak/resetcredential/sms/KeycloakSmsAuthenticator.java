@@ -1,27 +1,30 @@
 package org.sunbird.keycloak.resetcredential.sms;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
 import org.jboss.logging.Logger;
 import org.keycloak.authentication.AuthenticationFlowContext;
 import org.keycloak.authentication.AuthenticationFlowError;
 import org.keycloak.authentication.Authenticator;
+import org.keycloak.common.util.Time;
 import org.keycloak.credential.CredentialModel;
 import org.keycloak.models.AuthenticationExecutionModel;
+import org.keycloak.models.AuthenticatorConfigModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.sessions.AuthenticationSessionModel;
 import org.sunbird.keycloak.utils.Constants;
-import org.sunbird.keycloak.utils.HttpClient;
+import org.sunbird.keycloak.utils.EmailNotificationClient;
 
 /**
  * Created by joris on 11/11/2016.
@@ -32,6 +35,9 @@ public class KeycloakSmsAuthenticator implements Authenticator {
 
     public static final String CREDENTIAL_TYPE = "sms_validation";
 
+    // Stand-in sender for a channel that was already sent within the resend cooldown
+    private static final Supplier<CompletableFuture<Boolean>> ACKNOWLEDGED = () -> CompletableFuture.completedFuture(true);
+
     private enum CODE_STATUS {
         VALID,
         INVALID,
@@ -46,24 +52,39 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         UserModel user = context.getUser();
         logger.debug("KeycloakSmsAuthenticator@authenticate - User = " + user.getUsername());
 
-        List<String> mobileNumberCreds = user.getAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE);
-
-        String mobileNumber = null;
-        String userEmail = user.getEmail();
-
-        if (mobileNumberCreds != null && !mobileNumberCreds.isEmpty()) {
-            mobileNumber = mobileNumberCreds.get(0);
-        }
+        // Resolved by the choose user step, only looked up here when the flow did not go through it
+        ContactPoints contactPoints = ContactPoints.get(context.getAuthenticationSession(), user);
+        String mobileNumber = contactPoints.getPhone();
+        String userEmail = contactPoints.getEmail();
 
         if (StringUtils.isNotBlank(mobileNumber) || StringUtils.isNotBlank(userEmail)) {
-          Map<String, Object> otpResponse = generateOTP(context);
+          SmsAuthenticatorConfig config = SmsAuthenticatorConfig.of(context.getAuthenticatorConfig());
+          long cooldown = config.getResendCooldownMillis();
 
+          Map<String, Object> otpResponse = getOrGenerateOTP(context, config);
+          long now = Time.currentTimeMillis();
+          // Shared with a concurrent resend of this session, which may already be sending the code
+          OtpCodeClaims.Claim claim = OtpCodeClaims.get(user.getId(), context.getAuthenticationSession());
+
+          Map<OtpChannel, Long> deliveredAt = new ConcurrentHashMap<>();
+          Map<OtpChannel, Supplier<CompletableFuture<Boolean>>> senders = new EnumMap<>(OtpChannel.class);
           if (StringUtils.isNotBlank(mobileNumber)) {
-            sendSMS(otpResponse, context, mobileNumber);
+            senders.put(OtpChannel.SMS, isAlreadySent(context, claim, OtpChannel.SMS, now, cooldown) ? ACKNOWLEDGED
+                : recordDelivery(OtpChannel.SMS, smsSender(otpResponse, context, mobileNumber), deliveredAt, claim, now));
           }
           if (StringUtils.isNotBlank(userEmail)) {
-            sendEmailViaSunbird(otpResponse, context, userEmail);
+            senders.put(OtpChannel.EMAIL, isAlreadySent(context, claim, OtpChannel.EMAIL, now, cooldown) ? ACKNOWLEDGED
+                : recordDelivery(OtpChannel.EMAIL, emailSender(otpResponse, context, userEmail), deliveredAt, claim, now));
+          }
+
+          // Channels are sent concurrently, the OTP page is rendered once with the combined outcome
+          boolean delivered = OtpDelivery.deliver(config.getDeliveryPolicy(), config.getPrimaryChannel(), senders);
+          for (Map.Entry<OtpChannel, Long> entry : deliveredAt.entrySet()) {
+            context.getAuthenticationSession().setAuthNote(
+                KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SENT_AT_PREFIX + entry.getKey().name(),
+                entry.getValue().toString());
           }
+          navigateToEnterOTPPage(context, delivered);
         } else {
           // The mobile number is NOT configured --> complain
           Response challenge = context.form().setError("Missing mobile number and email!")
@@ -73,63 +94,140 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         }
     }
 
-    private Map<String, Object> generateOTP(AuthenticationFlowContext context) {
+    // Reuses the code already sent in this authentication session while it is valid, so refreshing
+    // the OTP page or re-entering the flow does not write and send a new code every time.
+    private Map<String, Object> getOrGenerateOTP(AuthenticationFlowContext context, SmsAuthenticatorConfig config) {
+      AuthenticationSessionModel authSession = context.getAuthenticationSession();
+      String code = authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_CODE);
+      long expiringAt = getExpiringAt(authSession);
+      long now = Time.currentTimeMillis();
+
+      if (code != null && expiringAt > now) {
+        logger.debug("KeycloakSmsAuthenticator@getOrGenerateOTP - reusing unexpired code");
+        Map<String, Object> response = new HashMap<>();
+        response.put(Constants.OTP, code);
+        response.put(Constants.TTL, (expiringAt - now + 59999) / 60000); // remaining minutes, rounded up
+        return response;
+      }
+
+      // A new code has to reach the user whatever was sent before
+      for (OtpChannel channel : OtpChannel.values()) {
+        authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SENT_AT_PREFIX + channel.name());
+      }
+      return generateOTP(context, config);
+    }
+
+    // Concurrent resends of the session get the same claimed code, and only the first one stores it
+    private Map<String, Object> generateOTP(AuthenticationFlowContext context, SmsAuthenticatorConfig config) {
       // The mobile number is configured --> send an SMS
-      long nrOfDigits = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
-          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_LENGTH, 8L);
+      long nrOfDigits = config.getCodeLength();
       logger.debug("Using nrOfDigits " + nrOfDigits);
 
       logger.debug("KeycloakSmsAuthenticator@sendSMS");
 
-      long ttl = KeycloakSmsAuthenticatorUtil.getConfigLong(context.getAuthenticatorConfig(),
-          KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TTL, 10 * 60L); // 10 minutes in s
+      long ttl = config.getCodeTtlSeconds();
 
       logger.debug("Using ttl " + ttl + " (s)");
-      String code = KeycloakSmsAuthenticatorUtil.getSmsCode(nrOfDigits);
-      storeSMSCode(context, code, new Date().getTime() + (ttl * 1000)); // s --> ms
+      AuthenticationSessionModel authSession = context.getAuthenticationSession();
+      OtpCodeClaims.Claim claim = OtpCodeClaims.claim(context.getUser().getId(), authSession,
+          () -> KeycloakSmsAuthenticatorUtil.getSmsCode(nrOfDigits, config.getCodeType()), ttl * 1000); // s --> ms
+      String code = claim.getCode();
+      long expiringAt = claim.getExpiringAt();
+      if (claim.markStored()) {
+        storeSMSCode(context, code, expiringAt);
+      } else {
+        logger.debug("KeycloakSmsAuthenticator@generateOTP - code claimed by a concurrent request");
+      }
+      OtpAttemptTracker.resetSession(authSession);
+      authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_CODE, code);
+      authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_EXP_TIME, Long.toString(expiringAt));
       Map<String, Object> response = new HashMap<>();
       response.put(Constants.OTP, code);
-      response.put(Constants.TTL, (ttl / 60));
+      response.put(Constants.TTL, (expiringAt - Time.currentTimeMillis() + 59999) / 60000); // remaining minutes, rounded up
       return response;
     }
-    
-    private void sendSMS(Map<String, Object> otpResponse, AuthenticationFlowContext context,
-        String mobileNumber) {
-      logger.debug("KeycloakSmsAuthenticator@sendSMS - Sending SMS");
 
-        if (KeycloakSmsAuthenticatorUtil.sendSmsCode(mobileNumber,
-          (String) otpResponse.get(Constants.OTP), context.getAuthenticatorConfig())) {
-        navigateToEnterOTPPage(context, true);
-      } else {
-        navigateToEnterOTPPage(context, false);
-      }
+    // Sent by an earlier request of this session, or being sent by a concurrent one
+    private boolean isAlreadySent(AuthenticationFlowContext context, OtpCodeClaims.Claim claim, OtpChannel channel,
+        long now, long cooldown) {
+      return sentWithinCooldown(context, channel, now, cooldown)
+          || (claim != null && !claim.startSending(channel, now, cooldown));
     }
 
-    private void sendEmailViaSunbird(Map<String, Object> otpResponse,
-        AuthenticationFlowContext context, String userEmail) {
-      logger.debug("KeycloakSmsAuthenticator@sendEmailViaSunbird - Sending Email via Sunbird API");
-
-      List<String> emails = new ArrayList<>(Arrays.asList(userEmail));
+    private boolean sentWithinCooldown(AuthenticationFlowContext context, OtpChannel channel, long now, long cooldown) {
+      String sentAt = context.getAuthenticationSession()
+          .getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SENT_AT_PREFIX + channel.name());
+      if (sentAt == null) {
+        return false;
+      }
+      try {
+        boolean withinCooldown = now - Long.parseLong(sentAt) < cooldown;
+        if (withinCooldown) {
+          logger.debug("KeycloakSmsAuthenticator@sentWithinCooldown - not resending over " + channel);
+        }
+        return withinCooldown;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
 
-      otpResponse.put(Constants.RECIPIENT_EMAILS, emails);
-      otpResponse.put(Constants.SUBJECT, Constants.MAIL_SUBJECT);
-      otpResponse.put(Constants.REALM_NAME, context.getRealm().getDisplayName());
-      otpResponse.put(Constants.EMAIL_TEMPLATE_TYPE, Constants.FORGOT_PASSWORD_EMAIL_TEMPLATE);
-      otpResponse.put(Constants.BODY, Constants.BODY);
+    private static long getExpiringAt(AuthenticationSessionModel authSession) {
+      String expTime = authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_EXP_TIME);
+      if (expTime == null) {
+        return 0L;
+      }
+      try {
+        return Long.parseLong(expTime);
+      } catch (NumberFormatException e) {
+        return 0L;
+      }
+    }
 
-      Map<String, Object> request = new HashMap<>();
-      request.put(Constants.REQUEST, otpResponse);
+    // Completes on a gateway thread, successful sends are copied into the auth session once delivery returns
+    // and failed ones hand the channel back to the next request
+    private static Supplier<CompletableFuture<Boolean>> recordDelivery(OtpChannel channel,
+        Supplier<CompletableFuture<Boolean>> sender, Map<OtpChannel, Long> deliveredAt, OtpCodeClaims.Claim claim,
+        long startedAt) {
+      return () -> sender.get().thenApply(sent -> {
+        if (Boolean.TRUE.equals(sent)) {
+          deliveredAt.put(channel, Time.currentTimeMillis());
+          return true;
+        }
+        if (claim != null) {
+          claim.sendFailed(channel, startedAt);
+        }
+        return false;
+      });
+    }
 
-      HttpResponse response = HttpClient.post(request,
-          (System.getenv(Constants.SUNBIRD_LMS_BASE_URL) + Constants.SEND_NOTIFICATION_URI),
-          System.getenv(Constants.SUNBIRD_LMS_AUTHORIZATION));
+    // Builds the SMS sender on the request thread, it only captures plain values from the context.
+    private Supplier<CompletableFuture<Boolean>> smsSender(Map<String, Object> otpResponse, AuthenticationFlowContext context,
+        String mobileNumber) {
+      String code = (String) otpResponse.get(Constants.OTP);
+      Long ttlMinutes = (Long) otpResponse.get(Constants.TTL);
+      AuthenticatorConfigModel config = context.getAuthenticatorConfig();
+      UserModel user = context.getUser();
+      String userName = StringUtils.isNotBlank(user.getFirstName()) ? user.getFirstName() : user.getUsername();
+
+      return () -> {
+        logger.debug("KeycloakSmsAuthenticator@sendSMS - Sending SMS");
+        return KeycloakSmsAuthenticatorUtil.sendSmsCodeAsync(mobileNumber, code, userName, ttlMinutes, config);
+      };
+    }
 
-      int statusCode = response.getStatusLine().getStatusCode();
-      if (statusCode == 200) {
-        navigateToEnterOTPPage(context, true);
-      } else {
-        navigateToEnterOTPPage(context, false);
-      }
+    // Builds the email sender on the request thread, it only captures plain values from the context.
+    private Supplier<CompletableFuture<Boolean>> emailSender(Map<String, Object> otpResponse,
+        AuthenticationFlowContext context, String userEmail) {
+      Map<String, Object> variables = new HashMap<>(otpResponse);
+      variables.put(Constants.SUBJECT, Constants.MAIL_SUBJECT);
+      variables.put(Constants.REALM_NAME, context.getRealm().getDisplayName());
+      variables.put(Constants.EMAIL_TEMPLATE_TYPE, Constants.FORGOT_PASSWORD_EMAIL_TEMPLATE);
+      variables.put(Constants.BODY, Constants.BODY);
+
+      return () -> {
+        logger.debug("KeycloakSmsAuthenticator@sendEmailViaSunbird - Sending Email via Sunbird API");
+        return EmailNotificationClient.getInstance().send(userEmail, variables);
+      };
     }
 
     private void navigateToEnterOTPPage(AuthenticationFlowContext context, Boolean flag) {
@@ -147,7 +245,29 @@ public class KeycloakSmsAuthenticator implements Authenticator {
     public void action(AuthenticationFlowContext context) {
         logger.debug("action called ... context = " + context);
         logger.debug("KeycloakSmsAuthenticator@action called ... for User = " + context.getUser().getUsername());
+        AuthenticationSessionModel authSession = context.getAuthenticationSession();
+        String userId = context.getUser().getId();
+
+        // Checked before validateCode, so a locked out guess never reaches the credential store
+        if (OtpAttemptTracker.isLocked(authSession, userId)) {
+            logger.debug("KeycloakSmsAuthenticator@action - LOCKED");
+            lockedChallenge(context);
+            return;
+        }
+
         CODE_STATUS status = validateCode(context);
+        if (status == CODE_STATUS.VALID) {
+            OtpAttemptTracker.reset(authSession, userId);
+        } else if (status == CODE_STATUS.INVALID) {
+            SmsAuthenticatorConfig config = SmsAuthenticatorConfig.of(context.getAuthenticatorConfig());
+            if (OtpAttemptTracker.recordFailure(authSession, userId, config.getMaxAttempts(), config.getLockoutMillis())) {
+                logger.debug("KeycloakSmsAuthenticator@action - too many invalid codes, code invalidated");
+                clearSessionCode(authSession, userId);
+                lockedChallenge(context);
+                return;
+            }
+        }
+
         Response challenge = null;
         switch (status) {
             case EXPIRED:
@@ -219,9 +339,38 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         String enteredCode = formData.getFirst(KeycloakSmsAuthenticatorConstants.ANSW_SMS_CODE);
         KeycloakSession session = context.getSession();
 
+        if (enteredCode == null) {
+            return CODE_STATUS.INVALID;
+        }
+
+        AuthenticationSessionModel authSession = context.getAuthenticationSession();
+        if (OtpAttemptTracker.isInvalidated(authSession)) {
+            logger.debug("KeycloakSmsAuthenticator@validateCode - code was invalidated after too many attempts");
+            return CODE_STATUS.INVALID;
+        }
+
+        // The code sent in this authentication session takes precedence over the stored credential,
+        // which is shared by all sessions of the user
+        String sessionCode = authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_CODE);
+        if (sessionCode != null) {
+            if (getExpiringAt(authSession) <= Time.currentTimeMillis()) {
+                result = CODE_STATUS.EXPIRED;
+            } else if (enteredCode.equals(sessionCode)) {
+                result = CODE_STATUS.VALID;
+                clearSessionCode(authSession, context.getUser().getId());
+            }
+            logger.debug("KeycloakSmsAuthenticator@validateCode - Result -" + result);
+            return result;
+        }
+
         List codeCreds = session.userCredentialManager().getStoredCredentialsByType(context.getRealm(), context.getUser(), KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_CODE);
         /*List timeCreds = session.userCredentialManager().getStoredCredentialsByType(context.getRealm(), context.getUser(), KeycloakSmsAuthenticatorConstants.USR_CRED_MDL_SMS_EXP_TIME);*/
 
+        // The stored code may have been purged, a code that is gone has expired
+        if (codeCreds == null || codeCreds.isEmpty()) {
+            logger.debug("KeycloakSmsAuthenticator@validateCode - no stored code");
+            return CODE_STATUS.EXPIRED;
+        }
         CredentialModel expectedCode = (CredentialModel) codeCreds.get(0);
         /*CredentialModel expTimeString = (CredentialModel) timeCreds.get(0);*/
 
@@ -237,6 +386,22 @@ public class KeycloakSmsAuthenticator implements Authenticator {
         return result;
     }
 
+    private void lockedChallenge(AuthenticationFlowContext context) {
+        Response challenge = context.form()
+                .setError("Too many invalid codes, please try again later")
+                .createForm("sms-validation.ftl");
+        context.failureChallenge(AuthenticationFlowError.INVALID_CREDENTIALS, challenge);
+    }
+
+    private static void clearSessionCode(AuthenticationSessionModel authSession, String userId) {
+        OtpCodeClaims.release(userId);
+        authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_CODE);
+        authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SMS_EXP_TIME);
+        for (OtpChannel channel : OtpChannel.values()) {
+            authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_SENT_AT_PREFIX + channel.name());
+        }
+    }
+
     @Override
     public boolean requiresUser() {
         logger.debug("requiresUser called ... returning true");
@@ -6,17 +6,33 @@ package org.sunbird.keycloak.resetcredential.sms;
 // TODO(shriharshs): Move strings for mobile, smsCode, countryCode, defaultCountry code to configuration
 public class KeycloakSmsAuthenticatorConstants {
     public static final String ATTR_MOBILE = "phone";
+    public static final String ATTR_COUNTRY_CODE = "countryCode";
     public static final String ANSW_SMS_CODE = "smsCode";
     public static final String COUNTRY_CODE = "+91";
     public static final String DEFAULT_COUNTRY_CODE = "0";
 
     public static final String CONF_PRP_SMS_CODE_TTL = "sms-auth.code.ttl";
     public static final String CONF_PRP_SMS_CODE_LENGTH = "sms-auth.code.length";
+    public static final String CONF_PRP_SMS_CODE_TYPE = "sms-auth.code.type";
     public static final String CONF_PRP_SMS_TEXT = "sms-auth.msg.text";
+    public static final String CONF_PRP_RESEND_COOLDOWN = "sms-auth.resend.cooldown";
+    public static final String CONF_PRP_MAX_ATTEMPTS = "sms-auth.attempts.max";
+    public static final String CONF_PRP_LOCKOUT = "sms-auth.attempts.lockout";
+    public static final String CONF_PRP_DELIVERY_POLICY = "sms-auth.delivery.policy";
+    public static final String CONF_PRP_DELIVERY_PRIMARY = "sms-auth.delivery.primary";
 
     // User credentials (used to persist the sent sms code + expiration time cluster wide)
     public static final String USR_CRED_MDL_SMS_CODE = "sms-auth.code";
     public static final String USR_CRED_MDL_SMS_EXP_TIME = "sms-auth.exp-time";
 
+    // Authentication session notes (code sent in this session and when it was sent per channel)
+    public static final String AUTH_NOTE_SMS_CODE = "sms-auth.note.code";
+    public static final String AUTH_NOTE_SMS_EXP_TIME = "sms-auth.note.exp-time";
+    public static final String AUTH_NOTE_SENT_AT_PREFIX = "sms-auth.note.sent-at.";
+    public static final String AUTH_NOTE_FAILURES = "sms-auth.note.failures";
+    public static final String AUTH_NOTE_INVALIDATED = "sms-auth.note.invalidated";
+    public static final String AUTH_NOTE_LOCKED_UNTIL = "sms-auth.note.locked-until";
+    public static final String AUTH_NOTE_CONTACT_POINTS = "sms-auth.note.contact-points";
+
     public static final String MSG91_SMS_PROVIDER_CONFIGURATIONS_PATH = "sms-provider/Msg91Creds.json";
 }
@@ -61,6 +61,8 @@ public class KeycloakSmsAuthenticatorCredentialProvider implements CredentialPro
 
         } else {
             creds.get(0).setValue(credInput.getValue());
+            // Keep the created date at issue time, the purge task relies on it
+            creds.get(0).setCreatedDate(Time.currentTimeMillis());
             session.userCredentialManager().updateCredential(realm, user, creds.get(0));
             logger.debug("KeycloakSmsAuthenticatorCredentialProvider@action Credentials updated for User = " + user.getUsername());
         }
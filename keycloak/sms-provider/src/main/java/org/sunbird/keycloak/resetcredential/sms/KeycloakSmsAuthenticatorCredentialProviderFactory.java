@@ -1,9 +1,13 @@
 package org.sunbird.keycloak.resetcredential.sms;
 
 import org.jboss.logging.Logger;
+import org.keycloak.Config;
 import org.keycloak.credential.CredentialProvider;
 import org.keycloak.credential.CredentialProviderFactory;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.services.scheduled.ClusterAwareScheduledTaskRunner;
+import org.keycloak.timer.TimerProvider;
 
 /**
  * Created by nickpack on 09/08/2017.
@@ -11,6 +15,13 @@ import org.keycloak.models.KeycloakSession;
 public class KeycloakSmsAuthenticatorCredentialProviderFactory implements CredentialProviderFactory<KeycloakSmsAuthenticatorCredentialProvider> {
     private static Logger logger = Logger.getLogger(KeycloakSmsAuthenticator.class);
 
+    private static final String PURGE_TASK_NAME = "sms-auth-code-purge";
+
+    private long purgeIntervalSeconds;
+    private long purgeRetentionSeconds;
+    private int purgeBatchSize;
+    private int purgeMaxBatches;
+
     @Override
     public String getId() {
         return "smsCode";
@@ -21,4 +32,36 @@ public class KeycloakSmsAuthenticatorCredentialProviderFactory implements Creden
         logger.debug("KeycloakSmsAuthenticatorCredentialProviderFactory -  create");
         return new KeycloakSmsAuthenticatorCredentialProvider(session);
     }
+
+    @Override
+    public void init(Config.Scope config) {
+        // 0 disables the purge
+        purgeIntervalSeconds = config.getLong("purgeIntervalSeconds", 3600L);
+        purgeRetentionSeconds = config.getLong("purgeRetentionSeconds", 24 * 3600L);
+        purgeBatchSize = config.getInt("purgeBatchSize", 500);
+        purgeMaxBatches = config.getInt("purgeMaxBatches", 100);
+    }
+
+    @Override
+    public void postInit(KeycloakSessionFactory factory) {
+        if (purgeIntervalSeconds <= 0) {
+            logger.info("KeycloakSmsAuthenticatorCredentialProviderFactory - purge of expired SMS codes is disabled");
+            return;
+        }
+
+        long intervalMillis = purgeIntervalSeconds * 1000;
+        ExpiredSmsCodePurgeTask task = new ExpiredSmsCodePurgeTask(purgeRetentionSeconds * 1000,
+                purgeBatchSize, purgeMaxBatches);
+
+        KeycloakSession session = factory.create();
+        try {
+            TimerProvider timer = session.getProvider(TimerProvider.class);
+            timer.schedule(new ClusterAwareScheduledTaskRunner(factory, task, intervalMillis), intervalMillis,
+                    PURGE_TASK_NAME);
+            logger.info("KeycloakSmsAuthenticatorCredentialProviderFactory - scheduled purge of expired SMS codes every "
+                    + purgeIntervalSeconds + " s");
+        } finally {
+            session.close();
+        }
+    }
 }
@@ -6,12 +6,21 @@ import org.keycloak.authentication.Authenticator;
 import org.keycloak.authentication.AuthenticatorFactory;
 import org.keycloak.authentication.ConfigurableAuthenticatorFactory;
 import org.keycloak.models.AuthenticationExecutionModel;
+import org.keycloak.models.AuthenticatorConfigModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.provider.ProviderConfigProperty;
+import org.sunbird.otp.OtpCodeType;
+import org.sunbird.utils.ThreadPoolUtil;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -23,6 +32,7 @@ public class KeycloakSmsAuthenticatorFactory implements AuthenticatorFactory, Co
 
     private static Logger logger = Logger.getLogger(KeycloakSmsAuthenticatorFactory.class);
     private static final KeycloakSmsAuthenticator SINGLETON = new KeycloakSmsAuthenticator();
+    private static final long CONFIG_PRUNE_INTERVAL_MINUTES = 10;
 
 
     public static final AuthenticationExecutionModel.Requirement[] REQUIREMENT_CHOICES = {
@@ -50,12 +60,67 @@ public class KeycloakSmsAuthenticatorFactory implements AuthenticatorFactory, Co
         property.setHelpText("Length of the SMS code.");
         configProperties.add(property);
 
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TYPE);
+        property.setLabel("Format of the SMS code");
+        property.setType(ProviderConfigProperty.LIST_TYPE);
+        property.setOptions(Arrays.asList(OtpCodeType.NUMERIC.getConfigValue(),
+                OtpCodeType.ZERO_PADDED_NUMERIC.getConfigValue(), OtpCodeType.ALPHANUMERIC.getConfigValue()));
+        property.setDefaultValue(OtpCodeType.NUMERIC.getConfigValue());
+        property.setHelpText("'numeric' never starts with 0, 'padded-numeric' may start with 0, 'alphanumeric' uses upper case letters and digits.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_RESEND_COOLDOWN);
+        property.setLabel("Resend cooldown");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setDefaultValue("30");
+        property.setHelpText("Seconds during which a resend of the same, still valid code is acknowledged without sending it again.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_MAX_ATTEMPTS);
+        property.setLabel("Maximum verification attempts");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setDefaultValue("5");
+        property.setHelpText("Number of invalid codes after which the code is invalidated and verification is locked.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_LOCKOUT);
+        property.setLabel("Verification lockout");
+        property.setType(ProviderConfigProperty.STRING_TYPE);
+        property.setDefaultValue("300");
+        property.setHelpText("Seconds during which verification stays locked after too many invalid codes.");
+        configProperties.add(property);
+
         // SMS Text
         property = new ProviderConfigProperty();
         property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT);
         property.setLabel("Template of text to send to the user");
         property.setType(ProviderConfigProperty.STRING_TYPE);
-        property.setHelpText("Use %sms-code% as placeholder for the generated SMS code. Use %user% and %password% as placeholder when 'In message' authentication is used.");
+        property.setHelpText("Use %sms-code% as placeholder for the generated SMS code, %phonenumber% for the mobile number, %user% for the user's first name (or username) and %ttl% for the minutes the code stays valid.");
+        configProperties.add(property);
+
+        // OTP delivery
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_DELIVERY_POLICY);
+        property.setLabel("OTP delivery policy");
+        property.setType(ProviderConfigProperty.LIST_TYPE);
+        property.setOptions(Arrays.asList(OtpDeliveryPolicy.ANY.getConfigValue(),
+                OtpDeliveryPolicy.ALL.getConfigValue(), OtpDeliveryPolicy.PRIMARY_WITH_FALLBACK.getConfigValue()));
+        property.setDefaultValue(OtpDeliveryPolicy.ANY.getConfigValue());
+        property.setHelpText("When the user has both a phone and an email: 'any' sends both at once and succeeds if one is delivered, "
+                + "'all' sends both at once and succeeds only if both are delivered, 'primary' sends the primary channel first and the other one only if it fails.");
+        configProperties.add(property);
+
+        property = new ProviderConfigProperty();
+        property.setName(KeycloakSmsAuthenticatorConstants.CONF_PRP_DELIVERY_PRIMARY);
+        property.setLabel("Primary OTP channel");
+        property.setType(ProviderConfigProperty.LIST_TYPE);
+        property.setOptions(Arrays.asList("sms", "email"));
+        property.setDefaultValue("sms");
+        property.setHelpText("Channel tried first when the delivery policy is 'primary'.");
         configProperties.add(property);
     }
 
@@ -112,6 +177,30 @@ public class KeycloakSmsAuthenticatorFactory implements AuthenticatorFactory, Co
 
     public void postInit(KeycloakSessionFactory factory) {
         logger.debug("postInit called ... factory = " + factory);
+        // Load the SMS providers and create their clients before the first OTP is sent
+        KeycloakSmsAuthenticatorUtil.initSmsProviders();
+        ThreadPoolUtil.getScheduler().scheduleWithFixedDelay(() -> pruneConfigSnapshots(factory),
+                CONFIG_PRUNE_INTERVAL_MINUTES, CONFIG_PRUNE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Authenticator configs are removed without an event, so look for the ones still in use
+    private static void pruneConfigSnapshots(KeycloakSessionFactory factory) {
+        if (!SmsAuthenticatorConfig.hasSnapshots()) {
+            return;
+        }
+        try {
+            KeycloakModelUtils.runJobInTransaction(factory, session -> {
+                Set<String> configIds = new HashSet<>();
+                for (RealmModel realm : session.realms().getRealms()) {
+                    for (AuthenticatorConfigModel config : realm.getAuthenticatorConfigs()) {
+                        configIds.add(config.getId());
+                    }
+                }
+                SmsAuthenticatorConfig.retainConfigs(configIds);
+            });
+        } catch (RuntimeException e) {
+            logger.error("KeycloakSmsAuthenticatorFactory - could not prune authenticator config snapshots", e);
+        }
     }
 
     public void close() {
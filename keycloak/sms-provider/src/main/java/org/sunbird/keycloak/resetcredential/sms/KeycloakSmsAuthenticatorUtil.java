@@ -1,17 +1,23 @@
 package org.sunbird.keycloak.resetcredential.sms;
 
-import com.amazonaws.util.StringUtils;
 import org.jboss.logging.Logger;
 import org.keycloak.models.AuthenticatorConfigModel;
 import org.keycloak.models.UserModel;
-import org.sunbird.sms.msg91.Msg91SmsProviderFactory;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
+import org.sunbird.otp.OtpCodeGenerators;
+import org.sunbird.otp.OtpCodeType;
+import org.sunbird.sms.SmsProviderRegistry;
 import org.sunbird.sms.provider.ISmsProvider;
-import org.sunbird.utils.JsonUtil;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+import org.sunbird.utils.ThreadPoolUtil;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by joris on 18/11/2016.
@@ -20,6 +26,9 @@ public class KeycloakSmsAuthenticatorUtil {
 
     private static Logger logger = Logger.getLogger(KeycloakSmsAuthenticatorUtil.class);
 
+    private static final SmsProviderRegistry smsProviderRegistry = new SmsProviderRegistry(
+            new File(KeycloakSmsAuthenticatorConstants.MSG91_SMS_PROVIDER_CONFIGURATIONS_PATH).getAbsolutePath());
+
     public static String getAttributeValue(UserModel user, String attributeName) {
         String result = null;
         List<String> values = user.getAttribute(attributeName);
@@ -30,106 +39,65 @@ public class KeycloakSmsAuthenticatorUtil {
         return result;
     }
 
-    public static String getConfigString(AuthenticatorConfigModel config, String configName) {
-        return getConfigString(config, configName, null);
-    }
-
-    public static String getConfigString(AuthenticatorConfigModel config, String configName, String defaultValue) {
+    public static String createMessage(String code, String mobileNumber, String userName, Long ttlMinutes,
+            AuthenticatorConfigModel config) {
+        SmsTemplate template = SmsAuthenticatorConfig.of(config).getSmsTemplate();
+        logger.debug("KeycloakSmsAuthenticatorUtil@createMessage : templateText - " + template.getSource());
 
-        String value = defaultValue;
-
-        if (config.getConfig() != null) {
-            // Get value
-            value = config.getConfig().get(configName);
+        Map<String, String> values = new HashMap<>(8);
+        values.put(SmsTemplate.SMS_CODE, code);
+        values.put(SmsTemplate.PHONE_NUMBER, mobileNumber);
+        if (userName != null) {
+            values.put(SmsTemplate.USER, userName);
         }
-
-        return value;
-    }
-
-    public static Long getConfigLong(AuthenticatorConfigModel config, String configName) {
-        return getConfigLong(config, configName, null);
-    }
-
-    public static Long getConfigLong(AuthenticatorConfigModel config, String configName, Long defaultValue) {
-
-        Long value = defaultValue;
-
-        if (config.getConfig() != null) {
-            // Get value
-            Object obj = config.getConfig().get(configName);
-            try {
-                value = Long.valueOf((String) obj); // s --> ms
-            } catch (NumberFormatException nfe) {
-                logger.error("Can not convert " + obj + " to a number.");
-            }
+        if (ttlMinutes != null) {
+            values.put(SmsTemplate.TTL, ttlMinutes.toString());
         }
-
-        return value;
-    }
-
-    public static String createMessage(String code, String mobileNumber, AuthenticatorConfigModel config) {
-        String text = KeycloakSmsAuthenticatorUtil.getConfigString(config, KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT);
-        logger.debug("KeycloakSmsAuthenticatorUtil@createMessage : templateText - " + text);
-        text = text.replaceAll("%sms-code%", code);
-        text = text.replaceAll("%phonenumber%", mobileNumber);
-
-        return text;
+        return template.render(values);
     }
 
     public static String setDefaultCountryCodeIfZero(String mobileNumber) {
-        if (mobileNumber.startsWith(KeycloakSmsAuthenticatorConstants.DEFAULT_COUNTRY_CODE)) {
-            mobileNumber = KeycloakSmsAuthenticatorConstants.COUNTRY_CODE + mobileNumber.substring(1);
-        } else if (mobileNumber.startsWith(KeycloakSmsAuthenticatorConstants.COUNTRY_CODE)) {
-            mobileNumber = mobileNumber;
-        } else {
-            mobileNumber = KeycloakSmsAuthenticatorConstants.COUNTRY_CODE + mobileNumber;
-        }
-
-        return mobileNumber;
+        PhoneNumber number = PhoneNumberNormalizer.normalize(mobileNumber);
+        return number != null ? number.toString() : mobileNumber;
     }
 
-    static boolean sendSmsCode(String mobileNumber, String code, AuthenticatorConfigModel config) {
-        String smsText = createMessage(code, mobileNumber, config);
+    /**
+     * Starts sending the code and returns without waiting; the future completes on the provider's
+     * gateway threads, so callers must not wait for it on a worker pool thread.
+     */
+    static CompletableFuture<Boolean> sendSmsCodeAsync(String mobileNumber, String code, String userName,
+            Long ttlMinutes, AuthenticatorConfigModel config) {
+        String smsText = createMessage(code, mobileNumber, userName, ttlMinutes, config);
         logger.debug("KeycloakSmsAuthenticatorUtil@sendSmsCode : smsText - " + smsText);
 
-        Boolean msg91SmsProviderStatus = send(mobileNumber, smsText);
-        if (msg91SmsProviderStatus != null) return msg91SmsProviderStatus;
-
-        return false;
+        // Providers are routed on the country code, so always hand them the E.164 form
+        return send(setDefaultCountryCodeIfZero(mobileNumber), smsText);
     }
 
-    private static Boolean send(String mobileNumber, String code) {
-        String filePath = new File(KeycloakSmsAuthenticatorConstants.MSG91_SMS_PROVIDER_CONFIGURATIONS_PATH).getAbsolutePath();
-        logger.debug("KeycloakSmsAuthenticatorUtil@sendSmsCode : filePath - " + filePath);
-
-        if (!StringUtils.isNullOrEmpty(filePath)) {
-            Map<String, String> configurations = JsonUtil.readFromJson(filePath);
-            logger.debug("KeycloakSmsAuthenticatorUtil@sendSmsCode : configurations - " + configurations);
-
-            Msg91SmsProviderFactory msg91SmsProviderFactory = new Msg91SmsProviderFactory();
+    static void initSmsProviders() {
+        ThreadPoolUtil.getExecutor().execute(smsProviderRegistry::getProvider);
+    }
 
-            ISmsProvider msg91SmsProvider = msg91SmsProviderFactory.create(configurations);
+    private static CompletableFuture<Boolean> send(String mobileNumber, String code) {
+        ISmsProvider smsProvider = smsProviderRegistry.getProvider();
 
-            if (msg91SmsProvider != null) {
-                return msg91SmsProvider.send(mobileNumber, code);
-            }
+        if (smsProvider != null) {
+            return smsProvider.sendAsync(new SmsMessage(mobileNumber, code)).toCompletableFuture()
+                    .thenApply(SmsDeliveryResult::isSent);
         }
-        return null;
+        logger.error("KeycloakSmsAuthenticatorUtil@send : no SMS provider configured");
+        return CompletableFuture.completedFuture(false);
     }
 
-    static String getSmsCode(long nrOfDigits) {
+    static String getSmsCode(long nrOfDigits, OtpCodeType codeType) {
         if (nrOfDigits < 1) {
             throw new RuntimeException("Number of digits must be bigger than 0");
         }
 
-        double maxValue = Math.pow(10.0, nrOfDigits); // 10 ^ nrOfDigits;
-        Random r = new Random();
-        long code = (long) (r.nextFloat() * maxValue);
-        return Long.toString(code);
+        return OtpCodeGenerators.generate(codeType, (int) nrOfDigits);
     }
 
     public static boolean validateTelephoneNumber(String telephoneNumber) {
-        String pattern = "\\d{10}|(?:\\d{3}-){2}\\d{4}|\\(\\d{3}\\)\\d{3}-?\\d{4}";
-        return telephoneNumber.matches(pattern);
+        return PhoneNumberNormalizer.normalize(telephoneNumber) != null;
     }
 }
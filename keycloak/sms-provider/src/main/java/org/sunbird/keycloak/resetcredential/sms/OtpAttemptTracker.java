@@ -0,0 +1,102 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.keycloak.common.util.Time;
+import org.keycloak.sessions.AuthenticationSessionModel;
+import org.sunbird.utils.LockoutTable;
+
+/**
+ * Counts failed OTP verifications per authentication session and per user without touching the
+ * database.
+ *
+ * The per session counter lives in authentication session notes (replicated with the session),
+ * the per user counter in a node local {@link LockoutTable}, so cycling through user names cannot
+ * push a locked user out. Once either reaches the configured maximum, the session's code is
+ * invalidated and verification is locked for the lockout period. Both use Keycloak's clock.
+ */
+class OtpAttemptTracker {
+
+    private static final int MAX_TRACKED_USERS = 100000;
+
+    private static final LockoutTable<Attempts> USER_ATTEMPTS =
+            new LockoutTable<>(MAX_TRACKED_USERS, attempts -> attempts.lockedUntil);
+
+    private OtpAttemptTracker() {
+    }
+
+    static boolean isLocked(AuthenticationSessionModel authSession, String userId) {
+        long now = Time.currentTimeMillis();
+        if (parseLong(authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_LOCKED_UNTIL)) > now) {
+            return true;
+        }
+        Attempts attempts = USER_ATTEMPTS.get(userId, now);
+        return attempts != null && attempts.lockedUntil > now;
+    }
+
+    static boolean isInvalidated(AuthenticationSessionModel authSession) {
+        return authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_INVALIDATED) != null;
+    }
+
+    /**
+     * Records a failed verification.
+     *
+     * @return true if this failure used up the allowed attempts and the code was invalidated
+     */
+    static boolean recordFailure(AuthenticationSessionModel authSession, String userId, int maxAttempts,
+            long lockoutMillis) {
+        long now = Time.currentTimeMillis();
+
+        int sessionFailures = (int) parseLong(authSession.getAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_FAILURES)) + 1;
+        authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_FAILURES, Integer.toString(sessionFailures));
+
+        Attempts userAttempts = USER_ATTEMPTS.update(userId, current -> {
+            int failures = current == null ? 1 : current.failures + 1;
+            return new Attempts(failures, failures >= maxAttempts ? now + lockoutMillis : 0L);
+        }, now, lockoutMillis);
+
+        if (sessionFailures >= maxAttempts || userAttempts.lockedUntil > now) {
+            authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_INVALIDATED, "true");
+            authSession.setAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_LOCKED_UNTIL,
+                    Long.toString(now + lockoutMillis));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when a new code is issued in the session.
+     */
+    static void resetSession(AuthenticationSessionModel authSession) {
+        authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_FAILURES);
+        authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_INVALIDATED);
+    }
+
+    /**
+     * Called after a successful verification.
+     */
+    static void reset(AuthenticationSessionModel authSession, String userId) {
+        resetSession(authSession);
+        authSession.removeAuthNote(KeycloakSmsAuthenticatorConstants.AUTH_NOTE_LOCKED_UNTIL);
+        USER_ATTEMPTS.remove(userId);
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static class Attempts {
+        private final int failures;
+        private final long lockedUntil;
+
+        Attempts(int failures, long lockedUntil) {
+            this.failures = failures;
+            this.lockedUntil = lockedUntil;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+/**
+ * Channels over which an OTP can be delivered to the user.
+ */
+public enum OtpChannel {
+    SMS,
+    EMAIL;
+
+    public static OtpChannel fromConfig(String value, OtpChannel defaultValue) {
+        if (value != null) {
+            for (OtpChannel channel : values()) {
+                if (channel.name().equalsIgnoreCase(value.trim())) {
+                    return channel;
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
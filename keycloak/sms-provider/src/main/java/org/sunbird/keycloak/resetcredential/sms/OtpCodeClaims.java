@@ -0,0 +1,129 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.keycloak.common.util.Time;
+import org.keycloak.sessions.AuthenticationSessionModel;
+import org.sunbird.utils.ThreadPoolUtil;
+
+/**
+ * Node local claims on the OTP code of a user, so concurrent resends in one authentication session
+ * agree on a single code and send it once.
+ *
+ * Authentication session notes only become visible to other requests when their transaction
+ * commits, after the code was sent, so two requests racing through the OTP step both see no code.
+ * Instead they go through {@link #claim}, which atomically hands both the same code. Storing the
+ * code credential and sending on a channel are then taken with a compare-and-set on the claim, so
+ * only one of the requests does either while the other acknowledges. Nothing is held while the
+ * credential is written or the code is sent.
+ *
+ * Requests of one authentication session reach the same node through sticky sessions, which is
+ * why the claims do not need to be shared across the cluster. They last as long as the code and
+ * are swept every minute.
+ */
+final class OtpCodeClaims {
+
+    private static final long SWEEP_INTERVAL_SECONDS = 60L;
+
+    private static final Map<String, Claim> CLAIMS = new ConcurrentHashMap<>();
+
+    static {
+        ThreadPoolUtil.getScheduler().scheduleWithFixedDelay(() -> {
+            long now = Time.currentTimeMillis();
+            CLAIMS.values().removeIf(claim -> claim.expiringAt <= now);
+        }, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private OtpCodeClaims() {
+    }
+
+    /**
+     * Returns the unexpired claim of the user in this authentication session, or replaces it with a
+     * new claim on a code from the supplier, valid for the given time.
+     */
+    static Claim claim(String userId, AuthenticationSessionModel authSession, Supplier<String> codes,
+            long ttlMillis) {
+        String sessionKey = sessionKey(authSession);
+        long now = Time.currentTimeMillis();
+        return CLAIMS.compute(userId, (key, current) -> current != null && current.isFor(sessionKey, now)
+                ? current : new Claim(sessionKey, codes.get(), now + ttlMillis));
+    }
+
+    /**
+     * Returns the unexpired claim of the user in this authentication session, or null.
+     */
+    static Claim get(String userId, AuthenticationSessionModel authSession) {
+        Claim claim = CLAIMS.get(userId);
+        return claim != null && claim.isFor(sessionKey(authSession), Time.currentTimeMillis()) ? claim : null;
+    }
+
+    /**
+     * Drops the claim of the user once its code was used up or invalidated.
+     */
+    static void release(String userId) {
+        CLAIMS.remove(userId);
+    }
+
+    private static String sessionKey(AuthenticationSessionModel authSession) {
+        return authSession.getParentSession().getId() + '.' + authSession.getTabId();
+    }
+
+    static final class Claim {
+        private final String sessionKey;
+        private final String code;
+        private final long expiringAt;
+        private final AtomicBoolean stored = new AtomicBoolean();
+        private final Map<OtpChannel, Long> sendingSince = new ConcurrentHashMap<>();
+
+        private Claim(String sessionKey, String code, long expiringAt) {
+            this.sessionKey = sessionKey;
+            this.code = code;
+            this.expiringAt = expiringAt;
+        }
+
+        String getCode() {
+            return code;
+        }
+
+        long getExpiringAt() {
+            return expiringAt;
+        }
+
+        /**
+         * Returns true for the first caller only, which is the one to store the code.
+         */
+        boolean markStored() {
+            return stored.compareAndSet(false, true);
+        }
+
+        /**
+         * Returns true if the caller is to send the code over the channel, false if another request
+         * started sending it within the cooldown.
+         */
+        boolean startSending(OtpChannel channel, long now, long cooldown) {
+            Long since = sendingSince.get(channel);
+            while (since == null || now - since >= cooldown) {
+                if (since == null ? sendingSince.putIfAbsent(channel, now) == null
+                        : sendingSince.replace(channel, since, now)) {
+                    return true;
+                }
+                since = sendingSince.get(channel);
+            }
+            return false;
+        }
+
+        /**
+         * Lets the next request send over the channel again after a failed send.
+         */
+        void sendFailed(OtpChannel channel, long startedAt) {
+            sendingSince.remove(channel, startedAt);
+        }
+
+        private boolean isFor(String sessionKey, long now) {
+            return this.sessionKey.equals(sessionKey) && expiringAt > now;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.jboss.logging.Logger;
+
+/**
+ * Sends an OTP over several channels concurrently and combines the per channel outcomes into a
+ * single result according to an {@link OtpDeliveryPolicy}.
+ *
+ * Each channel sender starts its send and returns a future without blocking; the sends run on the
+ * providers' own gateway threads and only the request thread waits for the combined result, so no
+ * worker pool thread is held while a message is in flight.
+ */
+class OtpDelivery {
+
+    private static Logger logger = Logger.getLogger(OtpDelivery.class);
+
+    static final long DELIVERY_TIMEOUT_SECONDS = 30L;
+
+    private OtpDelivery() {
+    }
+
+    static boolean deliver(OtpDeliveryPolicy policy, OtpChannel primary,
+            Map<OtpChannel, Supplier<CompletableFuture<Boolean>>> senders) {
+        if (senders.isEmpty()) {
+            return false;
+        }
+
+        switch (policy) {
+            case ALL:
+                return await(all(start(senders, null)));
+            case PRIMARY_WITH_FALLBACK:
+                Supplier<CompletableFuture<Boolean>> primarySender = senders.get(primary);
+                if (primarySender != null && await(startSafely(primary, primarySender))) {
+                    return true;
+                }
+                logger.debug("OtpDelivery@deliver - primary channel " + primary + " failed, using fallback channels");
+                return await(any(start(senders, primary)));
+            case ANY:
+            default:
+                return await(any(start(senders, null)));
+        }
+    }
+
+    private static List<CompletableFuture<Boolean>> start(Map<OtpChannel, Supplier<CompletableFuture<Boolean>>> senders,
+            OtpChannel skip) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(senders.size());
+        for (Map.Entry<OtpChannel, Supplier<CompletableFuture<Boolean>>> entry : senders.entrySet()) {
+            if (entry.getKey() != skip) {
+                futures.add(startSafely(entry.getKey(), entry.getValue()));
+            }
+        }
+        return futures;
+    }
+
+    private static CompletableFuture<Boolean> any(List<CompletableFuture<Boolean>> futures) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (futures.isEmpty()) {
+            result.complete(false);
+            return result;
+        }
+        AtomicInteger pending = new AtomicInteger(futures.size());
+        for (CompletableFuture<Boolean> future : futures) {
+            future.thenAccept(sent -> {
+                if (sent) {
+                    result.complete(true);
+                } else if (pending.decrementAndGet() == 0) {
+                    result.complete(false);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static CompletableFuture<Boolean> all(List<CompletableFuture<Boolean>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignore -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
+    private static boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.get(DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.error("OtpDelivery@await - OTP delivery timed out after " + DELIVERY_TIMEOUT_SECONDS + " s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("OtpDelivery@await - OTP delivery failed", e);
+        }
+        return false;
+    }
+
+    // Failures, thrown or completed exceptionally, count as a channel that was not sent
+    private static CompletableFuture<Boolean> startSafely(OtpChannel channel, Supplier<CompletableFuture<Boolean>> sender) {
+        CompletableFuture<Boolean> sent;
+        try {
+            sent = sender.get();
+        } catch (Exception e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(e);
+        }
+        if (sent == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return sent.handle((result, e) -> {
+            if (e != null) {
+                logger.error("OtpDelivery@startSafely - sending OTP over " + channel + " failed", e);
+                return false;
+            }
+            return Boolean.TRUE.equals(result);
+        });
+    }
+}
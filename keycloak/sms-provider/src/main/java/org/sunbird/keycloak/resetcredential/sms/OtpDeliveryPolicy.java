@@ -0,0 +1,34 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+/**
+ * Decides whether an OTP counts as sent when it is delivered over more than one channel.
+ */
+public enum OtpDeliveryPolicy {
+    /** All channels are sent concurrently, delivery succeeds as soon as one channel succeeds. */
+    ANY("any"),
+    /** All channels are sent concurrently, delivery succeeds only if every channel succeeds. */
+    ALL("all"),
+    /** The primary channel is sent first, the other channels only if the primary one failed. */
+    PRIMARY_WITH_FALLBACK("primary");
+
+    private final String configValue;
+
+    OtpDeliveryPolicy(String configValue) {
+        this.configValue = configValue;
+    }
+
+    public String getConfigValue() {
+        return configValue;
+    }
+
+    public static OtpDeliveryPolicy fromConfig(String value, OtpDeliveryPolicy defaultValue) {
+        if (value != null) {
+            for (OtpDeliveryPolicy policy : values()) {
+                if (policy.configValue.equalsIgnoreCase(value.trim())) {
+                    return policy;
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
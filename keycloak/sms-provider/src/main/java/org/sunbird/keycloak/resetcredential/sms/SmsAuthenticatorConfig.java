@@ -0,0 +1,186 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import org.jboss.logging.Logger;
+import org.keycloak.models.AuthenticatorConfigModel;
+import org.sunbird.otp.OtpCodeType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, typed view of the SMS authenticator configuration.
+ *
+ * A snapshot is built once per authenticator config and kept until the admin changes the config,
+ * detected by comparing the raw values it was built from. Values that are missing get their
+ * defaults; values that are invalid get their defaults too and are reported once, when the
+ * snapshot is built, instead of on every login. Snapshots of configs that were deleted are dropped
+ * by {@link #retainConfigs(Set)}.
+ */
+public final class SmsAuthenticatorConfig {
+
+    private static Logger logger = Logger.getLogger(SmsAuthenticatorConfig.class);
+
+    static final long DEFAULT_CODE_LENGTH = 8;
+    static final long DEFAULT_CODE_TTL_SECONDS = 10 * 60;
+    static final long DEFAULT_RESEND_COOLDOWN_SECONDS = 30;
+    static final long DEFAULT_MAX_ATTEMPTS = 5;
+    static final long DEFAULT_LOCKOUT_SECONDS = 300;
+    private static final int MAX_CODE_LENGTH = 32;
+
+    private static final Map<String, SmsAuthenticatorConfig> snapshots = new ConcurrentHashMap<>();
+
+    private final Map<String, String> source;
+    private final int codeLength;
+    private final OtpCodeType codeType;
+    private final long codeTtlSeconds;
+    private final SmsTemplate smsTemplate;
+    private final long resendCooldownMillis;
+    private final int maxAttempts;
+    private final long lockoutMillis;
+    private final OtpDeliveryPolicy deliveryPolicy;
+    private final OtpChannel primaryChannel;
+    private final List<String> problems;
+
+    private SmsAuthenticatorConfig(Map<String, String> source) {
+        List<String> problems = new ArrayList<>();
+        this.source = source;
+        this.codeLength = (int) getLong(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_LENGTH,
+                DEFAULT_CODE_LENGTH, 1, MAX_CODE_LENGTH, problems);
+        this.codeType = getEnum(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TYPE,
+                OtpCodeType.fromConfig(source.get(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TYPE), null),
+                OtpCodeType.NUMERIC, problems);
+        this.codeTtlSeconds = getLong(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_CODE_TTL,
+                DEFAULT_CODE_TTL_SECONDS, 1, Long.MAX_VALUE / 1000, problems);
+        this.smsTemplate = SmsTemplate.compile(source.get(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT));
+        this.resendCooldownMillis = getLong(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_RESEND_COOLDOWN,
+                DEFAULT_RESEND_COOLDOWN_SECONDS, 0, Long.MAX_VALUE / 1000, problems) * 1000; // s --> ms
+        this.maxAttempts = (int) getLong(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_MAX_ATTEMPTS,
+                DEFAULT_MAX_ATTEMPTS, 1, Integer.MAX_VALUE, problems);
+        this.lockoutMillis = getLong(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_LOCKOUT,
+                DEFAULT_LOCKOUT_SECONDS, 0, Long.MAX_VALUE / 1000, problems) * 1000; // s --> ms
+        this.deliveryPolicy = getEnum(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_DELIVERY_POLICY,
+                OtpDeliveryPolicy.fromConfig(source.get(KeycloakSmsAuthenticatorConstants.CONF_PRP_DELIVERY_POLICY), null),
+                OtpDeliveryPolicy.ANY, problems);
+        this.primaryChannel = getEnum(source, KeycloakSmsAuthenticatorConstants.CONF_PRP_DELIVERY_PRIMARY,
+                OtpChannel.fromConfig(source.get(KeycloakSmsAuthenticatorConstants.CONF_PRP_DELIVERY_PRIMARY), null),
+                OtpChannel.SMS, problems);
+        if (isBlank(source.get(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT))) {
+            problems.add(KeycloakSmsAuthenticatorConstants.CONF_PRP_SMS_TEXT + " is empty");
+        }
+        this.problems = Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * Returns the snapshot of the given config, building it when the config is new or has changed.
+     */
+    public static SmsAuthenticatorConfig of(AuthenticatorConfigModel config) {
+        Map<String, String> values = config == null || config.getConfig() == null
+                ? Collections.<String, String>emptyMap() : config.getConfig();
+        String configId = config == null ? null : config.getId();
+        if (configId == null) {
+            return build(null, values);
+        }
+
+        SmsAuthenticatorConfig snapshot = snapshots.get(configId);
+        if (snapshot == null || !snapshot.source.equals(values)) {
+            snapshot = build(config.getAlias(), values);
+            snapshots.put(configId, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshots of configs whose id is not in the given set.
+     */
+    static void retainConfigs(Set<String> configIds) {
+        snapshots.keySet().retainAll(configIds);
+    }
+
+    static boolean hasSnapshots() {
+        return !snapshots.isEmpty();
+    }
+
+    private static SmsAuthenticatorConfig build(String alias, Map<String, String> values) {
+        SmsAuthenticatorConfig snapshot = new SmsAuthenticatorConfig(Collections.unmodifiableMap(new HashMap<>(values)));
+        if (!snapshot.problems.isEmpty()) {
+            logger.warn("SmsAuthenticatorConfig - invalid SMS authenticator config " + alias
+                    + ", using defaults for: " + snapshot.problems);
+        }
+        return snapshot;
+    }
+
+    private static long getLong(Map<String, String> source, String key, long defaultValue, long min, long max,
+            List<String> problems) {
+        String value = source.get(key);
+        if (isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        problems.add(key + "=" + value + " (expected a number between " + min + " and " + max + ")");
+        return defaultValue;
+    }
+
+    private static <T> T getEnum(Map<String, String> source, String key, T parsed, T defaultValue, List<String> problems) {
+        if (parsed != null) {
+            return parsed;
+        }
+        String value = source.get(key);
+        if (!isBlank(value)) {
+            problems.add(key + "=" + value + " (unknown value)");
+        }
+        return defaultValue;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    public int getCodeLength() {
+        return codeLength;
+    }
+
+    public OtpCodeType getCodeType() {
+        return codeType;
+    }
+
+    public long getCodeTtlSeconds() {
+        return codeTtlSeconds;
+    }
+
+    public SmsTemplate getSmsTemplate() {
+        return smsTemplate;
+    }
+
+    public long getResendCooldownMillis() {
+        return resendCooldownMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getLockoutMillis() {
+        return lockoutMillis;
+    }
+
+    public OtpDeliveryPolicy getDeliveryPolicy() {
+        return deliveryPolicy;
+    }
+
+    public OtpChannel getPrimaryChannel() {
+        return primaryChannel;
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.sunbird.keycloak.resetcredential.sms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An SMS text template parsed once into literal and placeholder segments, so rendering is a
+ * single pass into a pre-sized builder.
+ *
+ * Placeholders have the form %name%; any name can be used as long as a value is supplied when
+ * rendering. A placeholder without a value is left in the text as written.
+ */
+public final class SmsTemplate {
+
+    public static final String SMS_CODE = "sms-code";
+    public static final String PHONE_NUMBER = "phonenumber";
+    public static final String USER = "user";
+    public static final String TTL = "ttl";
+
+    private static final char DELIMITER = '%';
+
+    private final String source;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private SmsTemplate(String source, List<String> literals, List<String> placeholders) {
+        this.source = source;
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parses the template. Segments alternate: literals[i] is followed by placeholders[i], and the
+     * last literal closes the text.
+     */
+    public static SmsTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        String text = source == null ? "" : source;
+
+        int literalStart = 0;
+        int index = 0;
+        while (index < text.length()) {
+            int open = text.indexOf(DELIMITER, index);
+            if (open < 0) {
+                break;
+            }
+            int close = text.indexOf(DELIMITER, open + 1);
+            if (close < 0) {
+                break;
+            }
+            String name = text.substring(open + 1, close);
+            if (isPlaceholderName(name)) {
+                literals.add(text.substring(literalStart, open));
+                placeholders.add(name);
+                literalStart = close + 1;
+                index = close + 1;
+            } else {
+                // Not a placeholder (e.g. "50% off"), the closing % may open the next one
+                index = close;
+            }
+        }
+        literals.add(text.substring(literalStart));
+        return new SmsTemplate(source, literals, placeholders);
+    }
+
+    private static boolean isPlaceholderName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String render(Map<String, String> values) {
+        int length = literalLength;
+        for (String placeholder : placeholders) {
+            String value = values.get(placeholder);
+            length += value != null ? value.length() : placeholder.length() + 2;
+        }
+
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < placeholders.length; i++) {
+            text.append(literals[i]);
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                text.append(value);
+            } else {
+                text.append(DELIMITER).append(placeholders[i]).append(DELIMITER);
+            }
+        }
+        text.append(literals[literals.length - 1]);
+        return text.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package org.sunbird.keycloak.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.jboss.logging.Logger;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.representations.AccessToken;
+import org.sunbird.utils.ExpiringCache;
+
+/**
+ * Bearer tokens that already passed the realm admin check, keyed by the SHA-256 of the token so
+ * the raw token is never kept in memory.
+ *
+ * An entry lives until the token expires or the maximum age is reached, whichever comes first.
+ * Every hit is checked against the realm and client not-before (revocation) and against the user
+ * session of the token (logout), so a revoked token is rejected on its next use even if it is
+ * still cached.
+ */
+class AdminTokenCache {
+
+  private static Logger logger = Logger.getLogger(AdminTokenCache.class);
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final ExpiringCache<String, VerifiedToken> tokens;
+  private final long maxAgeMillis;
+
+  AdminTokenCache(int maxSize, long maxAgeMillis) {
+    this.tokens = new ExpiringCache<>(maxSize);
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  boolean isVerified(KeycloakSession session, RealmModel realm, String token) {
+    String key = hash(token);
+    VerifiedToken verified = tokens.get(key);
+    if (verified == null) {
+      return false;
+    }
+    if (!verified.realmId.equals(realm.getId()) || !isStillValid(session, realm, verified)) {
+      tokens.remove(key);
+      return false;
+    }
+    return true;
+  }
+
+  void put(RealmModel realm, String token, AccessToken accessToken) {
+    long ttlMillis = maxAgeMillis;
+    if (accessToken.getExpiration() > 0) {
+      ttlMillis = Math.min(ttlMillis,
+          accessToken.getExpiration() * 1000L - System.currentTimeMillis());
+    }
+    if (ttlMillis <= 0) {
+      return;
+    }
+    tokens.put(hash(token), new VerifiedToken(realm.getId(), accessToken.getSessionState(),
+        accessToken.getIssuedFor(), accessToken.getIssuedAt()), ttlMillis);
+  }
+
+  void invalidateAll() {
+    tokens.invalidateAll();
+  }
+
+  private boolean isStillValid(KeycloakSession session, RealmModel realm,
+      VerifiedToken verified) {
+    if (verified.issuedAt < realm.getNotBefore()) {
+      logger.debug("AdminTokenCache: token revoked by realm not-before");
+      return false;
+    }
+    if (verified.clientId != null) {
+      ClientModel client = realm.getClientByClientId(verified.clientId);
+      if (client == null || !client.isEnabled() || verified.issuedAt < client.getNotBefore()) {
+        logger.debug("AdminTokenCache: client of the token is gone or revoked it");
+        return false;
+      }
+    }
+    if (verified.sessionId != null
+        && session.sessions().getUserSession(realm, verified.sessionId) == null) {
+      logger.debug("AdminTokenCache: session of the token has ended");
+      return false;
+    }
+    return true;
+  }
+
+  static String hash(String token) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(token.getBytes(StandardCharsets.UTF_8));
+      char[] hex = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+        hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static class VerifiedToken {
+    private final String realmId;
+    private final String sessionId;
+    private final String clientId;
+    private final int issuedAt;
+
+    VerifiedToken(String realmId, String sessionId, String clientId, int issuedAt) {
+      this.realmId = realmId;
+      this.sessionId = sessionId;
+      this.clientId = clientId;
+      this.issuedAt = issuedAt;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package org.sunbird.keycloak.rest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jboss.logging.Logger;
+import org.keycloak.common.util.Time;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.sunbird.utils.ExpiringCache;
+
+/**
+ * Required action links handed out recently, keyed by realm and user, then by required action,
+ * client, redirect URI and requested lifetime, so repeated requests for the same link get the same
+ * one instead of a freshly signed token.
+ *
+ * A link is reused only while more than the configured fraction of the requested lifetime
+ * remains, so it never outlives the expiry a fresh link would get. It is dropped when the email or
+ * email verification of the user differ from when it was created, which is checked on the user
+ * model without touching storage; credential and profile changes drop all links of the user
+ * through {@link RequiredActionLinkEventListenerFactory}.
+ *
+ * The cache and its invalidation are local to one node: a change made through another node of a
+ * cluster would not drop the links cached here. It is therefore only enabled on servers declared
+ * single node with the linkCacheSingleNode setting.
+ */
+class RequiredActionLinkCache {
+
+  private static Logger logger = Logger.getLogger(RequiredActionLinkCache.class);
+
+  private final ExpiringCache<String, Map<String, CachedLink>> links;
+  private final double minRemainingFraction;
+
+  RequiredActionLinkCache(int maxSize, double minRemainingFraction) {
+    this.links = new ExpiringCache<>(maxSize);
+    this.minRemainingFraction = minRemainingFraction;
+  }
+
+  String get(RealmModel realm, UserModel user, String actionName, String clientId,
+      String redirectUri, int expirationInSecs) {
+    Map<String, CachedLink> userLinks = links.get(userKey(realm.getId(), user.getId()));
+    if (userLinks == null) {
+      return null;
+    }
+    String key = linkKey(actionName, clientId, redirectUri, expirationInSecs);
+    CachedLink cached = userLinks.get(key);
+    if (cached == null) {
+      return null;
+    }
+    if (cached.expiration - Time.currentTime() <= expirationInSecs * minRemainingFraction) {
+      userLinks.remove(key, cached);
+      return null;
+    }
+    if (!cached.fingerprint.equals(fingerprint(user))) {
+      logger.debug("RequiredActionLinkCache: user changed since the link was created");
+      userLinks.remove(key, cached);
+      return null;
+    }
+    return cached.link;
+  }
+
+  void put(RealmModel realm, UserModel user, String actionName, String clientId,
+      String redirectUri, int expirationInSecs, int expiration, String link) {
+    int now = Time.currentTime();
+    long ttlMillis = (expiration - now) * 1000L;
+    if (ttlMillis <= 0) {
+      return;
+    }
+    CachedLink cached = new CachedLink(link, expiration, fingerprint(user));
+    links.compute(userKey(realm.getId(), user.getId()), (key, current) -> {
+      Map<String, CachedLink> userLinks = current != null ? current : new ConcurrentHashMap<>();
+      userLinks.values().removeIf(other -> other.expiration <= now);
+      userLinks.put(linkKey(actionName, clientId, redirectUri, expirationInSecs), cached);
+      return userLinks;
+    }, ttlMillis);
+  }
+
+  /**
+   * Drops every link of the user.
+   */
+  void invalidate(String realmId, String userId) {
+    links.remove(userKey(realmId, userId));
+  }
+
+  void invalidateAll() {
+    links.invalidateAll();
+  }
+
+  private static String userKey(String realmId, String userId) {
+    return realmId + '\n' + userId;
+  }
+
+  private static String linkKey(String actionName, String clientId, String redirectUri,
+      int expirationInSecs) {
+    return actionName + '\n' + clientId + '\n' + (redirectUri == null ? "" : redirectUri) + '\n'
+        + expirationInSecs;
+  }
+
+  private static String fingerprint(UserModel user) {
+    return user.getEmail() + '|' + user.isEmailVerified();
+  }
+
+  private static class CachedLink {
+    private final String link;
+    private final int expiration;
+    private final String fingerprint;
+
+    CachedLink(String link, int expiration, String fingerprint) {
+      this.link = link;
+      this.expiration = expiration;
+      this.fingerprint = fingerprint;
+    }
+  }
+}
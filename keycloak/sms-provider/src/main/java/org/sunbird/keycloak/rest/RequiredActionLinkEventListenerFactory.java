@@ -0,0 +1,105 @@
+package org.sunbird.keycloak.rest;
+
+import java.util.EnumSet;
+import java.util.Set;
+import org.jboss.logging.Logger;
+import org.keycloak.Config.Scope;
+import org.keycloak.events.Event;
+import org.keycloak.events.EventListenerProvider;
+import org.keycloak.events.EventListenerProviderFactory;
+import org.keycloak.events.EventType;
+import org.keycloak.events.admin.AdminEvent;
+import org.keycloak.events.admin.ResourceType;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.services.resource.RealmResourceProvider;
+
+/**
+ * Event listener that drops the cached required action links of a user whose credentials,
+ * email or profile changed, either by the user or through the admin API.
+ *
+ * It only has an effect when the link cache is enabled, and has to be added to the event
+ * listeners of the realm to receive its events. Events only reach the node they were raised on,
+ * which is why the link cache is limited to single node servers.
+ */
+public class RequiredActionLinkEventListenerFactory implements EventListenerProviderFactory {
+
+  private static Logger logger = Logger.getLogger(RequiredActionLinkEventListenerFactory.class);
+  public static final String PROVIDER_ID = "sunbird-required-action-link";
+
+  private static final Set<EventType> USER_CHANGES = EnumSet.of(EventType.UPDATE_PASSWORD,
+      EventType.RESET_PASSWORD, EventType.UPDATE_EMAIL, EventType.VERIFY_EMAIL,
+      EventType.UPDATE_PROFILE, EventType.UPDATE_TOTP, EventType.REMOVE_TOTP,
+      EventType.EXECUTE_ACTIONS, EventType.EXECUTE_ACTION_TOKEN);
+  private static final String USERS_PATH = "users/";
+
+  private static final EventListenerProvider NO_OP = new Listener(null);
+
+  private EventListenerProvider listener = NO_OP;
+
+  @Override
+  public String getId() {
+    return PROVIDER_ID;
+  }
+
+  @Override
+  public EventListenerProvider create(KeycloakSession session) {
+    return listener;
+  }
+
+  @Override
+  public void init(Scope config) {
+
+  }
+
+  @Override
+  public void postInit(KeycloakSessionFactory factory) {
+    RequiredActionLinkProviderFactory linkProviderFactory =
+        (RequiredActionLinkProviderFactory) factory.getProviderFactory(
+            RealmResourceProvider.class, RequiredActionLinkProviderFactory.PROVIDER_ID);
+    if (linkProviderFactory != null && linkProviderFactory.getLinkCache() != null) {
+      listener = new Listener(linkProviderFactory.getLinkCache());
+    }
+  }
+
+  @Override
+  public void close() {
+
+  }
+
+  private static class Listener implements EventListenerProvider {
+    private final RequiredActionLinkCache linkCache;
+
+    Listener(RequiredActionLinkCache linkCache) {
+      this.linkCache = linkCache;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+      if (linkCache != null && event.getUserId() != null && USER_CHANGES.contains(event.getType())) {
+        logger.debug("RequiredActionLinkEventListener: " + event.getType() + ", dropping links");
+        linkCache.invalidate(event.getRealmId(), event.getUserId());
+      }
+    }
+
+    @Override
+    public void onEvent(AdminEvent event, boolean includeRepresentation) {
+      // Any change under users/{id}, such as an update or a password reset, drops the links
+      String path = event.getResourcePath();
+      if (linkCache == null || event.getResourceType() != ResourceType.USER || path == null
+          || !path.startsWith(USERS_PATH)) {
+        return;
+      }
+      int end = path.indexOf('/', USERS_PATH.length());
+      String userId = path.substring(USERS_PATH.length(), end < 0 ? path.length() : end);
+      if (!userId.isEmpty()) {
+        linkCache.invalidate(event.getRealmId(), userId);
+      }
+    }
+
+    @Override
+    public void close() {
+
+    }
+  }
+}
@@ -7,22 +7,30 @@ import java.util.List;
 import java.util.Map;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
+import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
 import org.apache.commons.lang3.StringUtils;
 import org.jboss.logging.Logger;
+import org.keycloak.TokenCategory;
 import org.keycloak.authentication.actiontoken.execactions.ExecuteActionsActionToken;
 import org.keycloak.common.util.Time;
+import org.keycloak.crypto.SignatureProvider;
+import org.keycloak.crypto.SignatureSignerContext;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.protocol.oidc.utils.RedirectUtils;
 import org.keycloak.services.ErrorResponse;
+import org.keycloak.services.Urls;
 import org.keycloak.services.managers.AppAuthManager;
 import org.keycloak.services.managers.AuthenticationManager;
 import org.keycloak.services.managers.AuthenticationManager.AuthResult;
@@ -34,9 +42,18 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
 
   private static Logger logger = Logger.getLogger(RequiredActionLinkProvider.class);
   private KeycloakSession session;
+  private AdminTokenCache adminTokenCache;
+  private RequiredActionLinkCache linkCache;
 
   public RequiredActionLinkProvider(KeycloakSession session) {
+    this(session, null, null);
+  }
+
+  RequiredActionLinkProvider(KeycloakSession session, AdminTokenCache adminTokenCache,
+      RequiredActionLinkCache linkCache) {
     this.session = session;
+    this.adminTokenCache = adminTokenCache;
+    this.linkCache = linkCache;
   }
 
   /**
@@ -71,6 +88,15 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
 
     List<String> requiredActionList = getRequiredActionListOrError(actionName);
 
+    RealmModel realm = session.getContext().getRealm();
+    if (linkCache != null) {
+      String link = linkCache.get(realm, user, actionName, clientId, redirectUri,
+          expirationInSecs);
+      if (link != null) {
+        return linkResponse(link);
+      }
+    }
+
     try {
       ExecuteActionsActionToken token = new ExecuteActionsActionToken(user.getId(), expiration,
           requiredActionList, redirectUri, clientId);
@@ -85,14 +111,114 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
           token.serialize(session, session.getContext().getRealm(), session.getContext().getUri()));
       String link = builder.build(session.getContext().getRealm().getName()).toString();
 
-      Map<String, Object> response = new HashMap<>();
-      response.put(Constants.LINK, link);
-      return Response.ok(response).build();
+      if (linkCache != null) {
+        linkCache.put(realm, user, actionName, clientId, redirectUri, expirationInSecs,
+            expiration, link);
+      }
+      return linkResponse(link);
     } catch (Exception e) {
       return ErrorResponse.error(Constants.ERROR_CREATE_LINK, Status.INTERNAL_SERVER_ERROR);
     }
   }
 
+  private Response linkResponse(String link) {
+    Map<String, Object> response = new HashMap<>();
+    response.put(Constants.LINK, link);
+    return Response.ok(response).build();
+  }
+
+  /**
+   * Generate required action links for many users in one call. The client and every distinct
+   * redirect URI are validated once, users are resolved concurrently and the links are streamed
+   * back as newline-delimited JSON, one object per entry in request order, holding either the
+   * link or the error for that entry.
+   *
+   * @param request Request containing clientId, optional expirationInSecs and requests, a list of
+   *        entries with userName, requiredAction and optional redirectUri.
+   * 
+   * @return Streamed response with one line per entry or error in case the request is invalid.
+   */
+  @POST
+  @Path("bulk")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(Constants.APPLICATION_NDJSON)
+  public Response generateRequiredActionLinks(Map<String, Object> request) {
+    logger.debug("RestResourceProvider:generateRequiredActionLinks: called ");
+
+    checkRealmAdminAccess();
+
+    String clientId = getString(request, Constants.CLIENT_ID);
+    ClientModel client = getClientByClientIdOrError(clientId);
+
+    int expirationInSecs = getExpirationInSecs(getString(request, Constants.EXPIRATION_IN_SECS));
+    int expiration = Time.currentTime() + expirationInSecs;
+
+    List<RequiredActionLinkStream.Entry> entries = new ArrayList<>();
+    Map<String, Boolean> validRedirectUris = new HashMap<>();
+    for (Map<String, Object> entry : getEntriesOrError(request)) {
+      String userName = getString(entry, Constants.USERNAME);
+      String actionName = getString(entry, Constants.REQUIRED_ACTION);
+      String redirectUri = getString(entry, Constants.REDIRECT_URI);
+
+      List<String> requiredActionList = getRequiredActionList(actionName);
+      String error = null;
+      if (StringUtils.isBlank(userName)) {
+        error = MessageFormat.format(Constants.ERROR_MANDATORY_PARAM_MISSING, Constants.USERNAME);
+      } else if (StringUtils.isBlank(actionName)) {
+        error = MessageFormat.format(Constants.ERROR_MANDATORY_PARAM_MISSING,
+            Constants.REQUIRED_ACTION);
+      } else if (requiredActionList == null) {
+        error = MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE, actionName,
+            Constants.REQUIRED_ACTION);
+      } else if (StringUtils.isNotBlank(redirectUri) && !validRedirectUris
+          .computeIfAbsent(redirectUri, uri -> isValidRedirectUri(uri, client))) {
+        error = MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE, redirectUri,
+            Constants.REDIRECT_URI);
+      }
+      entries.add(new RequiredActionLinkStream.Entry(userName, redirectUri, requiredActionList,
+          error));
+    }
+
+    try {
+      RealmModel realm = session.getContext().getRealm();
+      UriInfo uri = session.getContext().getUri();
+      // Action tokens are internal tokens, all of them are signed with the active key read here
+      SignatureSignerContext signer = session.getProvider(SignatureProvider.class,
+          session.tokens().signatureAlgorithm(TokenCategory.INTERNAL)).signer();
+      String linkPrefix = LoginActionsService.actionTokenProcessor(uri).build(realm.getName())
+          .toString() + "?" + Constants.KEY + "=";
+
+      return Response.ok(new RequiredActionLinkStream(session.getKeycloakSessionFactory(),
+          realm.getId(), clientId, expiration, Urls.realmIssuer(uri.getBaseUri(), realm.getName()),
+          signer, linkPrefix, entries)).build();
+    } catch (Exception e) {
+      return ErrorResponse.error(Constants.ERROR_CREATE_LINK, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Map<String, Object>> getEntriesOrError(Map<String, Object> request) {
+    Object entries = request.get(Constants.REQUESTS);
+    if (!(entries instanceof List) || ((List<?>) entries).isEmpty()) {
+      throw new WebApplicationException(
+          ErrorResponse.error(MessageFormat.format(Constants.ERROR_MANDATORY_PARAM_MISSING,
+              Constants.REQUESTS), Status.BAD_REQUEST));
+    }
+    for (Object entry : (List<?>) entries) {
+      if (!(entry instanceof Map)) {
+        throw new WebApplicationException(
+            ErrorResponse.error(MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
+                entry, Constants.REQUESTS), Status.BAD_REQUEST));
+      }
+    }
+    return (List<Map<String, Object>>) entries;
+  }
+
+  private static String getString(Map<String, Object> map, String key) {
+    Object value = map.get(key);
+    return value == null ? null : value.toString();
+  }
+
   private UserModel getEnabledUserByUsernameOrError(String userName) {
     logger.debug("RestResourceProvider: getEnabledUserByUsernameOrError called");
     if (StringUtils.isBlank(userName)) {
@@ -124,6 +250,21 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
               actionName, Constants.REQUIRED_ACTION), Status.BAD_REQUEST));
     }
 
+    List<String> requiredActionList = getRequiredActionList(actionName);
+    if (requiredActionList == null) {
+      throw new WebApplicationException(
+          ErrorResponse.error(MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
+              actionName, Constants.REQUIRED_ACTION), Status.BAD_REQUEST));
+    }
+
+    return requiredActionList;
+  }
+
+  private List<String> getRequiredActionList(String actionName) {
+    if (actionName == null) {
+      return null;
+    }
+
     List<String> requiredActionList = new ArrayList<>();
     switch (actionName) {
       case Constants.UPDATE_PASSWORD:
@@ -133,9 +274,7 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
         requiredActionList.add(UserModel.RequiredAction.VERIFY_EMAIL.name());
         break;
       default:
-        throw new WebApplicationException(
-            ErrorResponse.error(MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
-                actionName, Constants.REQUIRED_ACTION), Status.BAD_REQUEST));
+        return null;
     }
 
     return requiredActionList;
@@ -162,8 +301,13 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
   private void checkRealmAdminAccess() {
     logger.debug("RestResourceProvider: checkRealmAdminAccess called");
     
-    AuthResult authResult =
-        new AppAuthManager().authenticateBearerToken(session, session.getContext().getRealm());
+    RealmModel realm = session.getContext().getRealm();
+    String token = getBearerToken();
+    if (token != null && adminTokenCache.isVerified(session, realm, token)) {
+      return;
+    }
+
+    AuthResult authResult = new AppAuthManager().authenticateBearerToken(session, realm);
     
     if (authResult == null) {
       throw new WebApplicationException(
@@ -173,21 +317,35 @@ public class RequiredActionLinkProvider implements RealmResourceProvider {
       throw new WebApplicationException(
           ErrorResponse.error(Constants.ERROR_REALM_ADMIN_ROLE_ACCESS, Status.FORBIDDEN));
     }
+
+    if (token != null) {
+      adminTokenCache.put(realm, token, authResult.getToken());
+    }
+  }
+
+  // Null when there is no cache or no bearer token, the token is then always authenticated
+  private String getBearerToken() {
+    if (adminTokenCache == null) {
+      return null;
+    }
+    HttpHeaders headers = session.getContext().getRequestHeaders();
+    return headers == null ? null : AppAuthManager.extractAuthorizationHeaderToken(headers);
   }
 
   private void validateRedirectUri(String redirectUri, ClientModel client) {
     logger.debug("RestResourceProvider: validateRedirectUri called");
-    if (StringUtils.isNotBlank(redirectUri)) {
-      String redirect = RedirectUtils.verifyRedirectUri(session.getContext().getUri(), redirectUri,
-          session.getContext().getRealm(), client);
-      if (redirect == null) {
-        throw new WebApplicationException(
-            ErrorResponse.error(MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
-                redirectUri, Constants.REDIRECT_URI), Status.BAD_REQUEST));
-      }
+    if (StringUtils.isNotBlank(redirectUri) && !isValidRedirectUri(redirectUri, client)) {
+      throw new WebApplicationException(
+          ErrorResponse.error(MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
+              redirectUri, Constants.REDIRECT_URI), Status.BAD_REQUEST));
     }
   }
 
+  private boolean isValidRedirectUri(String redirectUri, ClientModel client) {
+    return RedirectUtils.verifyRedirectUri(session.getContext().getUri(), redirectUri,
+        session.getContext().getRealm(), client) != null;
+  }
+
   private ClientModel getClientByClientIdOrError(String clientId) {
     logger.debug("RestResourceProvider: getClientByClientIdOrError called");
     if (StringUtils.isBlank(clientId)) {
@@ -4,6 +4,9 @@ import org.jboss.logging.Logger;
 import org.keycloak.Config.Scope;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleContainerModel;
+import org.keycloak.models.UserModel;
 import org.keycloak.services.resource.RealmResourceProvider;
 import org.keycloak.services.resource.RealmResourceProviderFactory;
 
@@ -13,6 +16,9 @@ public class RequiredActionLinkProviderFactory implements RealmResourceProviderF
       Logger.getLogger(RequiredActionLinkProviderFactory.class);
   public static final String PROVIDER_ID = "get-required-action-link";
 
+  private AdminTokenCache adminTokenCache;
+  private RequiredActionLinkCache linkCache;
+
   @Override
   public String getId() {
     logger.debug("RestResourceProviderFactory: getId called ");
@@ -21,17 +27,69 @@ public class RequiredActionLinkProviderFactory implements RealmResourceProviderF
 
   @Override
   public RealmResourceProvider create(KeycloakSession session) {
-    return new RequiredActionLinkProvider(session);
+    return new RequiredActionLinkProvider(session, adminTokenCache, linkCache);
   }
 
   @Override
   public void init(Scope config) {
+    // 0 disables the cache of verified admin tokens
+    long maxAgeSeconds = config.getLong("adminTokenCacheMaxAgeSeconds", 30L);
+    int maxSize = config.getInt("adminTokenCacheMaxSize", 1000);
+    if (maxAgeSeconds > 0 && maxSize > 0) {
+      adminTokenCache = new AdminTokenCache(maxSize, maxAgeSeconds * 1000);
+    }
+
+    // Links are minted on every call unless a size is configured. The cache is only invalidated on
+    // the node that sees a user change, so it is refused unless the server is declared single node.
+    int linkCacheMaxSize = config.getInt("linkCacheMaxSize", 0);
+    double minRemainingFraction = getDouble(config, "linkCacheMinRemainingFraction", 0.5);
+    if (linkCacheMaxSize > 0 && !config.getBoolean("linkCacheSingleNode", false)) {
+      logger.warn("RestResourceProviderFactory: linkCacheMaxSize ignored, the link cache is for"
+          + " single node servers only and needs linkCacheSingleNode set to true");
+    } else if (linkCacheMaxSize > 0) {
+      logger.info("RestResourceProviderFactory: reusing links while more than "
+          + minRemainingFraction + " of their lifetime remains");
+      linkCache = new RequiredActionLinkCache(linkCacheMaxSize, minRemainingFraction);
+    }
+  }
 
+  private static double getDouble(Scope config, String key, double defaultValue) {
+    String value = config.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      logger.error("RestResourceProviderFactory: invalid value " + value + " for " + key);
+      return defaultValue;
+    }
+  }
+
+  RequiredActionLinkCache getLinkCache() {
+    return linkCache;
   }
 
   @Override
   public void postInit(KeycloakSessionFactory factory) {
-
+    if (adminTokenCache == null && linkCache == null) {
+      return;
+    }
+    // Revocation and logout are checked on every cache hit, and user changes are handled by
+    // RequiredActionLinkEventListenerFactory; removals only need a reset
+    factory.register(event -> {
+      if (event instanceof RealmModel.RealmRemovedEvent
+          || event instanceof RealmModel.ClientRemovedEvent
+          || event instanceof UserModel.UserRemovedEvent
+          || event instanceof RoleContainerModel.RoleRemovedEvent) {
+        if (adminTokenCache != null) {
+          adminTokenCache.invalidateAll();
+        }
+        if (linkCache != null) {
+          linkCache.invalidateAll();
+        }
+      }
+    });
   }
 
   @Override
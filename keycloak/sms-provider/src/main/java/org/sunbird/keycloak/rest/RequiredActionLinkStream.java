@@ -0,0 +1,183 @@
+package org.sunbird.keycloak.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.ws.rs.core.StreamingOutput;
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+import org.keycloak.authentication.actiontoken.execactions.ExecuteActionsActionToken;
+import org.keycloak.common.util.Time;
+import org.keycloak.crypto.SignatureSignerContext;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.services.managers.AuthenticationManager;
+import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.utils.ThreadPoolUtil;
+
+/**
+ * Writes required action links for a bulk request as newline-delimited JSON, one object per
+ * entry and in request order.
+ *
+ * Users are resolved in chunks on the bulk pool, each chunk in its own session and
+ * transaction, since the session of the HTTP request must not be used from other threads. Client,
+ * redirect URI and required action are validated by the caller before streaming starts, and all
+ * tokens are signed with the signer, and so the realm key, captured for the request.
+ */
+class RequiredActionLinkStream implements StreamingOutput {
+
+  private static Logger logger = Logger.getLogger(RequiredActionLinkStream.class);
+
+  private static final int CHUNK_SIZE = 100;
+  private static final int MAX_CHUNKS_IN_FLIGHT = 8;
+  private static final String TOKEN_TYPE = "JWT";
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final KeycloakSessionFactory sessionFactory;
+  private final String realmId;
+  private final String clientId;
+  private final int expiration;
+  private final String issuer;
+  private final SignatureSignerContext signer;
+  private final String linkPrefix;
+  private final List<Entry> entries;
+
+  private volatile boolean cancelled;
+
+  RequiredActionLinkStream(KeycloakSessionFactory sessionFactory, String realmId, String clientId,
+      int expiration, String issuer, SignatureSignerContext signer, String linkPrefix,
+      List<Entry> entries) {
+    this.sessionFactory = sessionFactory;
+    this.realmId = realmId;
+    this.clientId = clientId;
+    this.expiration = expiration;
+    this.issuer = issuer;
+    this.signer = signer;
+    this.linkPrefix = linkPrefix;
+    this.entries = entries;
+  }
+
+  @Override
+  public void write(OutputStream out) throws IOException {
+    long start = System.currentTimeMillis();
+    Deque<CompletableFuture<List<Map<String, Object>>>> inFlight = new ArrayDeque<>();
+    int next = 0;
+    try {
+      while (next < entries.size() || !inFlight.isEmpty()) {
+        while (inFlight.size() < MAX_CHUNKS_IN_FLIGHT && next < entries.size()) {
+          List<Entry> chunk = entries.subList(next, Math.min(entries.size(), next + CHUNK_SIZE));
+          next += chunk.size();
+          inFlight.add(
+              CompletableFuture.supplyAsync(() -> resolve(chunk), ThreadPoolUtil.getBulkExecutor()));
+        }
+
+        for (Map<String, Object> line : inFlight.poll().join()) {
+          out.write(mapper.writeValueAsBytes(line));
+          out.write('\n');
+        }
+        out.flush();
+      }
+    } catch (IOException e) {
+      // The client went away, chunks that have not started yet are skipped
+      cancelled = true;
+      throw e;
+    }
+    logger.debug("RequiredActionLinkStream: wrote " + entries.size() + " links in "
+        + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  private List<Map<String, Object>> resolve(List<Entry> chunk) {
+    List<Map<String, Object>> lines = new ArrayList<>(chunk.size());
+    if (cancelled) {
+      return lines;
+    }
+    try {
+      KeycloakModelUtils.runJobInTransaction(sessionFactory, session -> {
+        RealmModel realm = session.realms().getRealm(realmId);
+        session.getContext().setRealm(realm);
+        for (Entry entry : chunk) {
+          lines.add(createLine(session, realm, entry));
+        }
+      });
+    } catch (Exception e) {
+      logger.error("RequiredActionLinkStream: failed to create links for " + chunk.size()
+          + " users", e);
+      for (int i = lines.size(); i < chunk.size(); i++) {
+        lines.add(errorLine(chunk.get(i), Constants.ERROR_CREATE_LINK));
+      }
+    }
+    return lines;
+  }
+
+  private Map<String, Object> createLine(KeycloakSession session, RealmModel realm, Entry entry) {
+    if (entry.error != null) {
+      return errorLine(entry, entry.error);
+    }
+
+    UserModel user = KeycloakModelUtils.findUserByNameOrEmail(session, realm, entry.userName);
+    if (user == null) {
+      return errorLine(entry, MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
+          entry.userName, Constants.USERNAME));
+    }
+    if (!user.isEnabled()) {
+      return errorLine(entry, Constants.ERROR_USER_IS_DISABLED);
+    }
+
+    try {
+      Map<String, Object> line = new LinkedHashMap<>();
+      line.put(Constants.USERNAME, entry.userName);
+      line.put(Constants.LINK, linkPrefix + sign(user.getId(), entry));
+      return line;
+    } catch (Exception e) {
+      logger.error("RequiredActionLinkStream: failed to create link for " + entry.userName, e);
+      return errorLine(entry, Constants.ERROR_CREATE_LINK);
+    }
+  }
+
+  // Same claims as ExecuteActionsActionToken.serialize, signed without looking up the key again
+  private String sign(String userId, Entry entry) {
+    ExecuteActionsActionToken token = new ExecuteActionsActionToken(userId, expiration,
+        entry.requiredActions, entry.redirectUri, clientId);
+    if (StringUtils.isNotBlank(entry.redirectUri)) {
+      token.setNote(AuthenticationManager.SET_REDIRECT_URI_AFTER_REQUIRED_ACTIONS, "true");
+    }
+    token.setRedirectUri(entry.redirectUri);
+    token.issuedAt(Time.currentTime()).id(token.getActionVerificationNonce().toString())
+        .issuer(issuer).audience(issuer);
+    return new JWSBuilder().type(TOKEN_TYPE).jsonContent(token).sign(signer);
+  }
+
+  private static Map<String, Object> errorLine(Entry entry, String error) {
+    Map<String, Object> line = new LinkedHashMap<>();
+    line.put(Constants.USERNAME, entry.userName);
+    line.put(Constants.ERROR, error);
+    return line;
+  }
+
+  static class Entry {
+    private final String userName;
+    private final String redirectUri;
+    private final List<String> requiredActions;
+    private final String error;
+
+    Entry(String userName, String redirectUri, List<String> requiredActions, String error) {
+      this.userName = userName;
+      this.redirectUri = redirectUri;
+      this.requiredActions = requiredActions;
+      this.error = error;
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package org.sunbird.keycloak.storage.spi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.ws.rs.core.HttpHeaders;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.jboss.logging.Logger;
+import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.keycloak.utils.PhoneIndex;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
+import org.sunbird.utils.BloomFilter;
+import org.sunbird.utils.ThreadPoolUtil;
+
+/**
+ * Bloom filter of the phone numbers, emails and usernames known to the user service, used to
+ * skip remote lookups for identifiers that definitely do not exist.
+ *
+ * The filter is enabled by the sunbird_user_export_url environment variable. That URL returns plain
+ * text with one identifier per line; called with a since parameter (epoch milliseconds) it returns
+ * only the identifiers added or changed after that time. A phone line may carry the country code of
+ * its user after a tab; phones are also added in E.164 form, read in that country code or the
+ * default country, which is how phone lookups check the filter. The filter is rebuilt in the
+ * background every sunbird_user_filter_rebuild_seconds and swapped in once complete, and between
+ * rebuilds it is topped up every sunbird_user_filter_delta_seconds, on the bulk pool so logins
+ * never wait for it. An export that does not answer within the socket timeout fails the sync.
+ * Phones in a delta are also dropped from the {@link PhoneIndex} in that E.164 form, as they may
+ * have moved to another user or been given to a second one, and a rebuild clears the index. The
+ * index is only used while these syncs keep succeeding.
+ *
+ * Until the first build completes, or when the last successful sync is older than three delta
+ * intervals, the filter lets everything through, so users created since the last sync are never
+ * rejected for longer than that.
+ */
+class KnownIdentifierFilter {
+
+  private static Logger logger = Logger.getLogger(KnownIdentifierFilter.class);
+
+  private static final long DEFAULT_EXPECTED_SIZE = 10000000L;
+  private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+  private static final long DEFAULT_REBUILD_SECONDS = 6 * 3600L;
+  private static final long DEFAULT_DELTA_SECONDS = 60L;
+  private static final int STALE_AFTER_DELTAS = 3;
+  private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+  private static final int SOCKET_TIMEOUT_MILLIS = 60000;
+
+  private final String exportUrl;
+  private final double falsePositiveRate;
+  private final long rebuildMillis;
+  private final long deltaMillis;
+  private final CloseableHttpClient client;
+
+  private final AtomicReference<State> state = new AtomicReference<>();
+  private final AtomicBoolean syncing = new AtomicBoolean();
+  private volatile long expectedSize;
+
+  KnownIdentifierFilter(String exportUrl, long expectedSize, double falsePositiveRate,
+      long rebuildMillis, long deltaMillis) {
+    this.exportUrl = exportUrl;
+    this.expectedSize = expectedSize;
+    this.falsePositiveRate = falsePositiveRate;
+    this.rebuildMillis = rebuildMillis;
+    this.deltaMillis = deltaMillis;
+    // A stalled export must fail the sync, which would otherwise stay in progress for good
+    this.client = HttpClients.custom()
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+            .build())
+        .useSystemProperties()
+        .build();
+  }
+
+  static KnownIdentifierFilter getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Returns false only if the identifier is definitely unknown to the user service.
+   */
+  boolean mightExist(String identifier) {
+    State current = state.get();
+    if (current == null || identifier == null
+        || System.currentTimeMillis() - current.syncedAt > STALE_AFTER_DELTAS * deltaMillis) {
+      return true;
+    }
+    return current.filter.mightContain(normalize(identifier));
+  }
+
+  private void start() {
+    if (StringUtils.isBlank(exportUrl)) {
+      return;
+    }
+    logger.info("KnownIdentifierFilter: syncing known identifiers every " + deltaMillis / 1000
+        + " s, rebuilding every " + rebuildMillis / 1000 + " s");
+    ThreadPoolUtil.getScheduler().scheduleWithFixedDelay(
+        () -> ThreadPoolUtil.getBulkExecutor().execute(this::sync), 0, deltaMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  // Only one sync runs at a time, which makes it the single writer of the current filter
+  private void sync() {
+    if (!syncing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      State current = state.get();
+      long startedAt = System.currentTimeMillis();
+      if (current == null || startedAt - current.builtAt >= rebuildMillis) {
+        rebuild(startedAt);
+      } else {
+        long added = load(exportUrl + (exportUrl.contains("?") ? "&" : "?") + "since="
+            + current.syncedAt, current.filter, PhoneIndex.getInstance()::invalidate);
+        state.set(new State(current.filter, current.builtAt, startedAt, current.entries + added));
+        PhoneIndex.getInstance().markSynced(startedAt, STALE_AFTER_DELTAS * deltaMillis);
+        logger.debug("KnownIdentifierFilter: added " + added + " identifiers");
+      }
+    } catch (Exception e) {
+      logger.error("KnownIdentifierFilter: sync failed, keeping the previous filter", e);
+    } finally {
+      syncing.set(false);
+    }
+  }
+
+  private void rebuild(long startedAt) throws IOException {
+    BloomFilter filter = BloomFilter.create(expectedSize, falsePositiveRate);
+    long entries = load(exportUrl, filter, phone -> {});
+    state.set(new State(filter, startedAt, startedAt, entries));
+    // Changes since the last delta were not reported one by one, start the index over
+    PhoneIndex.getInstance().invalidateAll();
+    PhoneIndex.getInstance().markSynced(startedAt, STALE_AFTER_DELTAS * deltaMillis);
+    logger.info("KnownIdentifierFilter: built filter of " + entries + " identifiers ("
+        + filter.bitSize() / 8 / 1024 + " KB) in " + (System.currentTimeMillis() - startedAt)
+        + " ms");
+    if (entries > expectedSize) {
+      // Size the next build for the actual volume so the false positive rate holds
+      expectedSize = entries + entries / 10;
+      logger.warn("KnownIdentifierFilter: " + entries + " identifiers exceed the expected size,"
+          + " the next build is sized for " + expectedSize);
+    }
+  }
+
+  private long load(String url, BloomFilter filter, Consumer<PhoneNumber> onPhone)
+      throws IOException {
+    HttpGet httpGet = new HttpGet(url);
+    String authorization = System.getenv(Constants.SUNBIRD_LMS_AUTHORIZATION);
+    if (StringUtils.isNotBlank(authorization)) {
+      httpGet.setHeader(HttpHeaders.AUTHORIZATION, Constants.BEARER + " " + authorization);
+    }
+    try (CloseableHttpResponse response = client.execute(httpGet)) {
+      int status = response.getStatusLine().getStatusCode();
+      if (status != 200) {
+        throw new IOException("User export returned " + response.getStatusLine());
+      }
+      long entries = 0;
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (StringUtils.isNotBlank(line)) {
+            int tab = line.indexOf('\t');
+            String identifier = (tab < 0 ? line : line.substring(0, tab)).trim();
+            filter.put(normalize(identifier));
+            PhoneNumber phone = PhoneNumberNormalizer.normalizeStored(identifier,
+                tab < 0 ? null : line.substring(tab + 1));
+            if (phone != null) {
+              filter.put(phone.toString());
+              onPhone.accept(phone);
+            }
+            entries++;
+          }
+        }
+      }
+      return entries;
+    }
+  }
+
+  private static String normalize(String identifier) {
+    return identifier.trim().toLowerCase();
+  }
+
+  private static long getEnvLong(String name, long defaultValue) {
+    String value = System.getenv(name);
+    if (StringUtils.isNotBlank(value)) {
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+        logger.error("KnownIdentifierFilter: invalid value " + value + " for " + name);
+      }
+    }
+    return defaultValue;
+  }
+
+  private static double getFalsePositiveRate() {
+    String value = System.getenv(Constants.USER_FILTER_FALSE_POSITIVE_RATE);
+    if (StringUtils.isNotBlank(value)) {
+      try {
+        double rate = Double.parseDouble(value.trim());
+        if (rate > 0 && rate < 1) {
+          return rate;
+        }
+      } catch (NumberFormatException e) {
+        // logged below
+      }
+      logger.error("KnownIdentifierFilter: invalid value " + value + " for "
+          + Constants.USER_FILTER_FALSE_POSITIVE_RATE);
+    }
+    return DEFAULT_FALSE_POSITIVE_RATE;
+  }
+
+  private static class State {
+    private final BloomFilter filter;
+    private final long builtAt;
+    private final long syncedAt;
+    private final long entries;
+
+    State(BloomFilter filter, long builtAt, long syncedAt, long entries) {
+      this.filter = filter;
+      this.builtAt = builtAt;
+      this.syncedAt = syncedAt;
+      this.entries = entries;
+    }
+  }
+
+  private static class InstanceHolder {
+    private static final KnownIdentifierFilter INSTANCE = create();
+
+    private static KnownIdentifierFilter create() {
+      KnownIdentifierFilter filter = new KnownIdentifierFilter(
+          System.getenv(Constants.USER_EXPORT_URL),
+          Math.max(1L, getEnvLong(Constants.USER_FILTER_EXPECTED_SIZE, DEFAULT_EXPECTED_SIZE)),
+          getFalsePositiveRate(),
+          Math.max(1L, getEnvLong(Constants.USER_FILTER_REBUILD_SECONDS, DEFAULT_REBUILD_SECONDS))
+              * 1000,
+          Math.max(1L, getEnvLong(Constants.USER_FILTER_DELTA_SECONDS, DEFAULT_DELTA_SECONDS))
+              * 1000);
+      filter.start();
+      return filter;
+    }
+  }
+}
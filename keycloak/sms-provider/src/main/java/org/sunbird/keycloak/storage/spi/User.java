@@ -20,6 +20,18 @@ public class User {
     this.lastName = lastName == null ? "" : lastName;
   }
 
+  public User(User other) {
+    this.id = other.id;
+    this.username = other.username;
+    this.email = other.email;
+    this.phone = other.phone;
+    this.firstName = other.firstName;
+    this.lastName = other.lastName;
+    this.password = other.password;
+    this.enabled = other.enabled;
+    this.countryCode = other.countryCode;
+  }
+
   public String getPassword() {
     return password;
   }
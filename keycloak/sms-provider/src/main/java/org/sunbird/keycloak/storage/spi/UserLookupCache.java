@@ -0,0 +1,123 @@
+package org.sunbird.keycloak.storage.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.utils.ExpiringCache;
+
+/**
+ * Short lived cache of remote user lookups by phone, email or username, keyed by lookup key and
+ * value. Lookups by id are never cached, Keycloak reloads users by id to see whether they were
+ * disabled or changed.
+ *
+ * A lookup that is still running is shared, so a request for a user that is being prefetched waits
+ * for that call instead of starting a second one. Only lookups that found users are kept, and
+ * callers always get copies because adapters modify the users they wrap.
+ *
+ * The time to live is read from the sunbird_user_lookup_cache_ttl_seconds environment variable,
+ * and is 0 by default, which disables the cache. A user found within the time to live is served
+ * as it was then, so a cached user may be stale for that long.
+ */
+public class UserLookupCache {
+
+  private static Logger logger = Logger.getLogger(UserLookupCache.class);
+
+  private static final long DEFAULT_TTL_SECONDS = 0;
+  private static final int MAX_SIZE = 10000;
+  private static final long WAIT_SECONDS = 10;
+
+  private final ExpiringCache<String, CompletableFuture<List<User>>> lookups =
+      new ExpiringCache<>(MAX_SIZE);
+  private final long ttlMillis;
+
+  UserLookupCache(long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+  }
+
+  public static UserLookupCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return ttlMillis > 0;
+  }
+
+  List<User> get(String key, String value, Supplier<List<User>> loader) {
+    if (!isEnabled() || Constants.ID.equalsIgnoreCase(key)) {
+      return loader.get();
+    }
+
+    String cacheKey = key.toLowerCase() + '\n' + value;
+    CompletableFuture<List<User>> lookup = lookups.get(cacheKey);
+    if (lookup == null) {
+      CompletableFuture<List<User>> created = new CompletableFuture<>();
+      lookup = lookups.compute(cacheKey, (k, current) -> current != null ? current : created,
+          ttlMillis);
+      if (lookup == created) {
+        return copy(load(cacheKey, created, loader));
+      }
+    }
+
+    try {
+      return copy(lookup.get(WAIT_SECONDS, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return loader.get();
+    } catch (ExecutionException | TimeoutException e) {
+      logger.debug("UserLookupCache@get - shared lookup failed, looking up again " + e);
+      return loader.get();
+    }
+  }
+
+  private List<User> load(String cacheKey, CompletableFuture<List<User>> lookup,
+      Supplier<List<User>> loader) {
+    try {
+      List<User> users = loader.get();
+      if (users == null || users.isEmpty()) {
+        // Not found and failed lookups look alike, neither is kept
+        lookups.remove(cacheKey);
+      }
+      lookup.complete(users);
+      return users;
+    } catch (RuntimeException e) {
+      lookups.remove(cacheKey);
+      lookup.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private static List<User> copy(List<User> users) {
+    if (users == null) {
+      return null;
+    }
+    List<User> copies = new ArrayList<>(users.size());
+    for (User user : users) {
+      copies.add(new User(user));
+    }
+    return copies;
+  }
+
+  private static long getTtlMillis() {
+    String ttl = System.getenv(Constants.USER_LOOKUP_CACHE_TTL_SECONDS);
+    if (StringUtils.isNotBlank(ttl)) {
+      try {
+        return Math.max(0L, Long.parseLong(ttl.trim())) * 1000;
+      } catch (NumberFormatException e) {
+        logger.error("UserLookupCache: invalid value " + ttl + " for "
+            + Constants.USER_LOOKUP_CACHE_TTL_SECONDS);
+      }
+    }
+    return DEFAULT_TTL_SECONDS * 1000;
+  }
+
+  private static class InstanceHolder {
+    private static final UserLookupCache INSTANCE = new UserLookupCache(getTtlMillis());
+  }
+}
@@ -2,14 +2,26 @@ package org.sunbird.keycloak.storage.spi;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
 import org.jboss.logging.Logger;
 import org.sunbird.keycloak.utils.Constants;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
+import org.sunbird.utils.ThreadPoolUtil;
 
 public class UserService {
 
   private static Logger logger = Logger.getLogger(UserService.class);
 
+  private static final String EMAIL_REGEX = "^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@"
+      + "[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
+  private static final String USERNAME_REGEX = "^[A-Za-z0-9_][A-Za-z0-9_.@-]*$";
+  private static final int MAX_IDENTIFIER_LENGTH = 100;
+  private static final boolean PREFETCH_ENABLED =
+      Boolean.parseBoolean(System.getenv(Constants.LOGIN_HINT_PREFETCH_ENABLED));
+
   public UserService() {
   }
 
@@ -25,16 +37,15 @@ public class UserService {
   public List<User> getByUsername(String username) {
     List<User> users = null;
     String numberRegex = "\\d+";
-    String emailRegex = "^[_A-Za-z0-9-\\+]+(\\.[_A-Za-z0-9-]+)*@"
-      + "[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$";
-    // mobile number length is of 10 digit
-    // assumption is either username will match with phone or email
-    if (username.matches(numberRegex) && 10 == username.length()) {
-      users = getByKey(Constants.PHONE, username);
-      if (users != null) {
+    // assumption is either username will match with phone or email, a numeric username that
+    // no user has as phone may still be a username
+    PhoneNumber phone = PhoneNumberNormalizer.normalize(username);
+    if (phone != null) {
+      users = getByPhone(phone);
+      if (users != null && (!users.isEmpty() || !username.matches(numberRegex))) {
         return users;
       }
-    } else if (username.matches(emailRegex)) {
+    } else if (username.matches(EMAIL_REGEX)) {
       users = getByKey(Constants.EMAIL, username);
       if (users != null)
         return users;
@@ -47,7 +58,79 @@ public class UserService {
   }
 
   public List<User> getByKey(String key, String searchValue) {
-    return UserSearchService.getUserByKey(key, searchValue);
+    if (Constants.PHONE.equalsIgnoreCase(key)) {
+      PhoneNumber phone = PhoneNumberNormalizer.normalize(searchValue);
+      if (phone != null) {
+        return getByPhone(phone);
+      }
+    }
+    if (!Constants.ID.equals(key) && !KnownIdentifierFilter.getInstance().mightExist(searchValue)) {
+      logger.debug("UserService:getByKey: no user has " + key + " " + searchValue);
+      return Collections.emptyList();
+    }
+    String value = searchValue;
+    return UserLookupCache.getInstance().get(key, value,
+        () -> UserSearchService.getUserByKey(key, value));
+  }
+
+  /**
+   * Returns the users holding the phone. The user service stores the national number and the
+   * country code apart, so it is searched by the national number and only the users whose phone,
+   * read in their own country code, is this number are kept. Every form of the number shares one
+   * cache entry, keyed on the E.164 form.
+   */
+  private List<User> getByPhone(PhoneNumber phone) {
+    String e164 = phone.toString();
+    if (!KnownIdentifierFilter.getInstance().mightExist(e164)) {
+      logger.debug("UserService:getByPhone: no user has phone " + e164);
+      return Collections.emptyList();
+    }
+    String nationalNumber = Long.toString(phone.getNationalNumber());
+    return UserLookupCache.getInstance().get(Constants.PHONE, e164, () -> {
+      List<User> users = UserSearchService.getUserByKey(Constants.PHONE, nationalNumber);
+      return users.stream()
+          .filter(user -> phone.equals(
+              PhoneNumberNormalizer.normalizeStored(user.getPhone(), user.getCountryCode())))
+          .collect(Collectors.toList());
+    });
+  }
+
+  /**
+   * Starts looking up the users for a login identifier in the background, so that the lookup
+   * made when the login form is submitted finds them in the cache.
+   *
+   * The identifier comes from an unauthenticated request, so the prefetch is off unless
+   * sunbird_login_hint_prefetch_enabled is true and the lookup cache is enabled, it is skipped for
+   * values that cannot be a phone, email or username, and it is dropped when no worker is free.
+   */
+  public static void prefetchByUsername(String username) {
+    if (!PREFETCH_ENABLED || StringUtils.isBlank(username)
+        || !UserLookupCache.getInstance().isEnabled()) {
+      return;
+    }
+    String trimmed = username.trim();
+    if (!isPlausibleIdentifier(trimmed)) {
+      logger.debug("UserService:prefetchByUsername: not prefetching " + trimmed);
+      return;
+    }
+    boolean started = ThreadPoolUtil.executeIfIdle(() -> {
+      try {
+        new UserService().getByUsername(trimmed);
+      } catch (Exception e) {
+        logger.debug("UserService:prefetchByUsername: lookup failed " + e);
+      }
+    });
+    if (!started) {
+      logger.debug("UserService:prefetchByUsername: workers busy, not prefetching");
+    }
+  }
+
+  private static boolean isPlausibleIdentifier(String value) {
+    if (value.length() > MAX_IDENTIFIER_LENGTH) {
+      return false;
+    }
+    return PhoneNumberNormalizer.normalize(value) != null || value.matches(EMAIL_REGEX)
+        || value.matches(USERNAME_REGEX);
   }
 
 }
\ No newline at end of file
@@ -15,6 +15,9 @@ public class Constants {
   public static final String IS_AUTH_REQUIRED = "isAuthRequired";
   public static final String KEY = "key";
   public static final String LINK = "link";
+  public static final String ERROR = "error";
+  public static final String REQUESTS = "requests";
+  public static final String APPLICATION_NDJSON = "application/x-ndjson";
   public static final String BEARER = "Bearer";
   public static final String ADMIN = "admin";
   public static final int DEFAULT_LINK_EXPIRATION_IN_SECS = 7200;
@@ -46,6 +49,16 @@ public class Constants {
   public static final String FIRST_NAME = "firstname";
   public static final String ID = "id";
   public static final String PHONE = "phone";
+  public static final String LOGIN_IP_FAILURE_FACTOR = "sunbird_login_ip_failure_factor";
+  public static final String USER_LOOKUP_CACHE_TTL_SECONDS = "sunbird_user_lookup_cache_ttl_seconds";
+  public static final String LOGIN_HINT_PREFETCH_ENABLED = "sunbird_login_hint_prefetch_enabled";
+  public static final String USER_EXPORT_URL = "sunbird_user_export_url";
+  public static final String USER_FILTER_EXPECTED_SIZE = "sunbird_user_filter_expected_size";
+  public static final String USER_FILTER_FALSE_POSITIVE_RATE = "sunbird_user_filter_fpp";
+  public static final String USER_FILTER_REBUILD_SECONDS = "sunbird_user_filter_rebuild_seconds";
+  public static final String USER_FILTER_DELTA_SECONDS = "sunbird_user_filter_delta_seconds";
+  public static final String PHONE_INDEX_TTL_SECONDS = "sunbird_phone_index_ttl_seconds";
+  public static final String DEFAULT_COUNTRY_CODE = "sunbird_default_country_code";
   public static final String SUNBIRD_CASSANDRA_IP = "sunbird_cassandra_host";
   public static final String SUNBIRD_CASSANDRA_PORT = "sunbird_cassandra_port";
   public static final String LAST_NAME = "lastname";
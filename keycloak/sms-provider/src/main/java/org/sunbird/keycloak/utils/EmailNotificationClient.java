@@ -0,0 +1,118 @@
+package org.sunbird.keycloak.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.jboss.logging.Logger;
+import org.sunbird.utils.ThreadPoolUtil;
+
+/**
+ * Client for the Sunbird email notification API.
+ *
+ * Emails are posted on the notification pool through one pooled keep-alive client with connect
+ * and socket timeouts, so neither the caller nor the SMS gateway pool waits on the notification
+ * service. The response is always read to the end, which returns the connection to the pool.
+ */
+public class EmailNotificationClient {
+
+  private static Logger logger = Logger.getLogger(EmailNotificationClient.class);
+
+  private static final int MAX_CONNECTIONS = 20;
+  private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+  private static final int SOCKET_TIMEOUT_MILLIS = 10000;
+  private static final long IDLE_TIMEOUT_SECONDS = 60;
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final String url;
+  private final String authorization;
+  private final CloseableHttpClient client;
+
+  public EmailNotificationClient(String url, String authorization) {
+    this.url = url;
+    this.authorization = authorization;
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(MAX_CONNECTIONS);
+    connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+    this.client = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+            .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+            .build())
+        .evictExpiredConnections()
+        .evictIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .useSystemProperties()
+        .build();
+  }
+
+  public static EmailNotificationClient getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Sends an email without blocking the caller. The returned future completes with true when the
+   * notification service accepted it.
+   *
+   * @param recipientEmail email address of the recipient
+   * @param variables request fields for the email (template type, subject, otp, ...)
+   */
+  public CompletableFuture<Boolean> send(String recipientEmail, Map<String, Object> variables) {
+    return CompletableFuture.supplyAsync(() -> post(recipientEmail, variables),
+        ThreadPoolUtil.getNotificationExecutor());
+  }
+
+  private boolean post(String recipientEmail, Map<String, Object> variables) {
+    try {
+      Map<String, Object> emailRequest = new HashMap<>(variables);
+      emailRequest.put(Constants.RECIPIENT_EMAILS, Collections.singletonList(recipientEmail));
+      Map<String, Object> request = new HashMap<>();
+      request.put(Constants.REQUEST, emailRequest);
+
+      HttpPost httpPost = new HttpPost(url);
+      httpPost.setEntity(
+          new StringEntity(mapper.writeValueAsString(request), ContentType.APPLICATION_JSON));
+      httpPost.setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+      if (StringUtils.isNotBlank(authorization)) {
+        httpPost.setHeader(HttpHeaders.AUTHORIZATION, Constants.BEARER + " " + authorization);
+      }
+
+      long start = System.currentTimeMillis();
+      try (CloseableHttpResponse response = client.execute(httpPost)) {
+        EntityUtils.consume(response.getEntity());
+        if (response.getStatusLine().getStatusCode() == 200) {
+          logger.debug("EmailNotificationClient@post - sent email in "
+              + (System.currentTimeMillis() - start) + " ms");
+          return true;
+        }
+        logger.error("EmailNotificationClient@post - email could not be sent: "
+            + response.getStatusLine());
+      }
+    } catch (Exception e) {
+      logger.error("EmailNotificationClient@post - email could not be sent", e);
+    }
+    return false;
+  }
+
+  private static class InstanceHolder {
+    private static final EmailNotificationClient INSTANCE = new EmailNotificationClient(
+        System.getenv(Constants.SUNBIRD_LMS_BASE_URL) + Constants.SEND_NOTIFICATION_URI,
+        System.getenv(Constants.SUNBIRD_LMS_AUTHORIZATION));
+  }
+}
@@ -0,0 +1,191 @@
+package org.sunbird.keycloak.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+import org.keycloak.common.util.Time;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
+import org.sunbird.utils.LongObjectHashMap;
+
+/**
+ * Node local index from phone numbers to the id of the only user holding them, per realm, so a
+ * phone login can load the user by id instead of searching local and federated storage by
+ * attribute.
+ *
+ * Phone numbers are stored as their E.164 number, so every form of a number shares its entry.
+ * The index is filled from attribute searches: a phone held by one user maps to that user, and a
+ * phone held by several maps to {@link #DUPLICATE} so the duplicate is reported without
+ * searching again. Entries expire after sunbird_phone_index_ttl_seconds (0 disables the index).
+ *
+ * An entry cannot tell whether another user took the phone since it was recorded, so the index
+ * relies on the user export sync to drop every phone that changed, and is only used while that
+ * sync keeps up: with no {@link #markSynced(long, long)} within the allowed age, nothing is served
+ * or recorded and phones are searched for every time. The sync runs only when
+ * sunbird_user_export_url is set; without it the index stays unused whatever its TTL.
+ */
+public class PhoneIndex {
+
+  private static Logger logger = Logger.getLogger(PhoneIndex.class);
+
+  /** Returned for phones held by more than one user. */
+  public static final String DUPLICATE = "\u0000duplicate";
+
+  private static final long DEFAULT_TTL_SECONDS = 60L;
+  private static final int MAX_ENTRIES_PER_REALM = 1000000;
+
+  private static final PhoneIndex INSTANCE = new PhoneIndex(getTtlMillis());
+
+  private final long ttlMillis;
+  private final Map<String, RealmIndex> realms = new ConcurrentHashMap<>();
+  private volatile long syncedAt;
+  private volatile long maxSyncAgeMillis;
+
+  PhoneIndex(long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+  }
+
+  public static PhoneIndex getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the id of the user holding the phone, {@link #DUPLICATE} if several users hold it, or
+   * null if the phone is not indexed.
+   */
+  public String get(String realmId, String phone) {
+    long key = encode(phone);
+    RealmIndex index = realms.get(realmId);
+    if (key < 0 || index == null || !isSynced()) {
+      return null;
+    }
+    Entry entry = index.get(key);
+    if (entry == null || Time.currentTimeMillis() - entry.recordedAt >= ttlMillis) {
+      return null;
+    }
+    return entry.userId;
+  }
+
+  /**
+   * Records the user holding the phone, or {@link #DUPLICATE} if several users hold it.
+   */
+  public void put(String realmId, String phone, String userId) {
+    long key = encode(phone);
+    if (key < 0 || ttlMillis <= 0 || userId == null || !isSynced()) {
+      return;
+    }
+    realms.computeIfAbsent(realmId, id -> new RealmIndex())
+        .put(key, new Entry(userId, Time.currentTimeMillis()));
+  }
+
+  public void remove(String realmId, String phone) {
+    long key = encode(phone);
+    RealmIndex index = realms.get(realmId);
+    if (key >= 0 && index != null) {
+      index.remove(key);
+    }
+  }
+
+  /**
+   * Drops the phone from the index of every realm.
+   */
+  public void invalidate(PhoneNumber phone) {
+    long key = phone.getE164();
+    realms.values().forEach(index -> index.remove(key));
+  }
+
+  /**
+   * Drops the phones of every realm.
+   */
+  public void invalidateAll() {
+    realms.values().forEach(RealmIndex::clear);
+  }
+
+  /**
+   * Records that every phone changed before the given time was invalidated. The index is used
+   * until the sync is older than the given age.
+   */
+  public void markSynced(long syncedAt, long maxAgeMillis) {
+    this.maxSyncAgeMillis = maxAgeMillis;
+    this.syncedAt = syncedAt;
+  }
+
+  private boolean isSynced() {
+    return maxSyncAgeMillis > 0 && System.currentTimeMillis() - syncedAt <= maxSyncAgeMillis;
+  }
+
+  // Returns -1 for values that are not phone numbers
+  static long encode(String phone) {
+    return PhoneNumberNormalizer.toE164(phone);
+  }
+
+  private static long getTtlMillis() {
+    String ttl = System.getenv(Constants.PHONE_INDEX_TTL_SECONDS);
+    if (StringUtils.isNotBlank(ttl)) {
+      try {
+        return Long.parseLong(ttl.trim()) * 1000;
+      } catch (NumberFormatException e) {
+        logger.error("PhoneIndex: invalid value " + ttl + " for "
+            + Constants.PHONE_INDEX_TTL_SECONDS);
+      }
+    }
+    return DEFAULT_TTL_SECONDS * 1000;
+  }
+
+  private static class RealmIndex {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongObjectHashMap<Entry> entries = new LongObjectHashMap<>();
+
+    Entry get(long key) {
+      lock.readLock().lock();
+      try {
+        return entries.get(key);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    void put(long key, Entry entry) {
+      lock.writeLock().lock();
+      try {
+        if (entries.size() >= MAX_ENTRIES_PER_REALM) {
+          // Expired entries are only replaced, not swept, so start over once the index is full
+          logger.info("PhoneIndex: clearing " + entries.size() + " entries");
+          entries.clear();
+        }
+        entries.put(key, entry);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    void remove(long key) {
+      lock.writeLock().lock();
+      try {
+        entries.remove(key);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    void clear() {
+      lock.writeLock().lock();
+      try {
+        entries.clear();
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private static class Entry {
+    private final String userId;
+    private final long recordedAt;
+
+    Entry(String userId, long recordedAt) {
+      this.userId = userId;
+      this.recordedAt = recordedAt;
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package org.sunbird.keycloak.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+
+/**
+ * Turns the ways a phone number gets typed (0XXXXXXXXXX, XXXXXXXXXX, +91XXXXXXXXXX, 0091 XXX-XXX
+ * XXXX) into one canonical E.164 number, so lookups and cache keys agree on a single form.
+ *
+ * Spaces, dashes, dots, slashes and brackets are ignored. A number starting with + or 00 carries
+ * its country code, which is recognised from the ITU assignment of one, two and three digit codes.
+ * Any other number belongs to the default country, taken from sunbird_default_country_code (91
+ * when unset): its trunk prefix 0 is dropped, and if it is longer than ten digits and starts with
+ * the default country code, it is taken to include that code. The number is parsed in a single
+ * pass without regular expressions or intermediate strings.
+ */
+public final class PhoneNumberNormalizer {
+
+  private static Logger logger = Logger.getLogger(PhoneNumberNormalizer.class);
+
+  private static final int DEFAULT_COUNTRY_CODE = 91;
+  private static final int MAX_E164_DIGITS = 15;
+  private static final int MIN_NATIONAL_DIGITS = 4;
+  private static final int MAX_PLAIN_NATIONAL_DIGITS = 10;
+  private static final int MAX_INPUT_DIGITS = 18;
+
+  private static final long[] POWERS_OF_TEN = new long[MAX_INPUT_DIGITS + 1];
+  private static final boolean[] TWO_DIGIT_CODES = new boolean[100];
+
+  static {
+    POWERS_OF_TEN[0] = 1L;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+    int[] codes = {20, 27, 30, 31, 32, 33, 34, 36, 39, 40, 41, 43, 44, 45, 46, 47, 48, 49, 51, 52,
+        53, 54, 55, 56, 57, 58, 60, 61, 62, 63, 64, 65, 66, 81, 82, 84, 86, 90, 91, 92, 93, 94, 95,
+        98};
+    for (int code : codes) {
+      TWO_DIGIT_CODES[code] = true;
+    }
+  }
+
+  private static final int DEFAULT_COUNTRY = getConfiguredCountryCode();
+
+  private PhoneNumberNormalizer() {}
+
+  public static int getDefaultCountryCode() {
+    return DEFAULT_COUNTRY;
+  }
+
+  /**
+   * Returns the number in the default country, or null if the input is not a phone number.
+   */
+  public static PhoneNumber normalize(String input) {
+    return normalize(input, DEFAULT_COUNTRY);
+  }
+
+  /**
+   * Returns the number, reading numbers without a country code as numbers of the given country,
+   * or null if the input is not a phone number.
+   */
+  public static PhoneNumber normalize(String input, int defaultCountryCode) {
+    if (input == null) {
+      return null;
+    }
+    long value = 0L;
+    int digits = 0;
+    int leadingZeros = 0;
+    boolean international = false;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++digits > MAX_INPUT_DIGITS) {
+          return null;
+        }
+        if (value == 0 && c == '0') {
+          leadingZeros++;
+        }
+        value = value * 10 + (c - '0');
+      } else if (c == '+') {
+        if (international || digits > 0) {
+          return null;
+        }
+        international = true;
+      } else if (!isSeparator(c)) {
+        return null;
+      }
+    }
+    int significant = digits - leadingZeros;
+    if (!international && leadingZeros >= 2) {
+      // 00 is the international call prefix used in most countries
+      international = true;
+      leadingZeros -= 2;
+    }
+    if (international) {
+      if (leadingZeros > 0 || significant < 1) {
+        return null;
+      }
+      int codeDigits = countryCodeDigits(value, significant);
+      int countryCode = (int) (value / POWERS_OF_TEN[significant - codeDigits]);
+      return create(countryCode, codeDigits, value % POWERS_OF_TEN[significant - codeDigits]);
+    }
+    if (defaultCountryCode < 1 || defaultCountryCode > 999) {
+      return null;
+    }
+    int codeDigits = digitCount(defaultCountryCode);
+    if (significant > MAX_PLAIN_NATIONAL_DIGITS && significant - codeDigits >= MIN_NATIONAL_DIGITS
+        && value / POWERS_OF_TEN[significant - codeDigits] == defaultCountryCode) {
+      value %= POWERS_OF_TEN[significant - codeDigits];
+    }
+    return create(defaultCountryCode, codeDigits, value);
+  }
+
+  /**
+   * Returns a phone stored on a user, read in the country code stored with it (such as 91 or +91),
+   * or in the default country when the user has none; null if it is not a phone number.
+   */
+  public static PhoneNumber normalizeStored(String phone, String countryCode) {
+    int code = parseCountryCode(countryCode);
+    return normalize(phone, code > 0 ? code : DEFAULT_COUNTRY);
+  }
+
+  /**
+   * Returns the E.164 number as a long, or -1 if the input is not a phone number.
+   */
+  public static long toE164(String input) {
+    PhoneNumber number = normalize(input);
+    return number == null ? -1L : number.getE164();
+  }
+
+  /**
+   * Parses a country code such as 91 or +91, returning -1 if it is not one.
+   */
+  public static int parseCountryCode(String countryCode) {
+    if (StringUtils.isBlank(countryCode)) {
+      return -1;
+    }
+    String trimmed = countryCode.trim();
+    int start = trimmed.charAt(0) == '+' ? 1 : 0;
+    if (trimmed.length() - start < 1 || trimmed.length() - start > 3) {
+      return -1;
+    }
+    int code = 0;
+    for (int i = start; i < trimmed.length(); i++) {
+      char c = trimmed.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      code = code * 10 + (c - '0');
+    }
+    return code > 0 ? code : -1;
+  }
+
+  private static PhoneNumber create(int countryCode, int codeDigits, long nationalNumber) {
+    int nationalDigits = digitCount(nationalNumber);
+    if (nationalNumber == 0 || nationalDigits < MIN_NATIONAL_DIGITS
+        || codeDigits + nationalDigits > MAX_E164_DIGITS) {
+      return null;
+    }
+    return new PhoneNumber(countryCode,
+        countryCode * POWERS_OF_TEN[nationalDigits] + nationalNumber, nationalNumber);
+  }
+
+  private static int countryCodeDigits(long value, int digits) {
+    int first = (int) (value / POWERS_OF_TEN[digits - 1]);
+    if (first == 1 || first == 7 || digits < 2) {
+      return 1;
+    }
+    return TWO_DIGIT_CODES[(int) (value / POWERS_OF_TEN[digits - 2])] ? 2 : 3;
+  }
+
+  private static int digitCount(long value) {
+    int digits = 1;
+    while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+      digits++;
+    }
+    return digits;
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == ' ' || c == '-' || c == '.' || c == '/' || c == '(' || c == ')';
+  }
+
+  private static int getConfiguredCountryCode() {
+    String value = System.getenv(Constants.DEFAULT_COUNTRY_CODE);
+    if (StringUtils.isNotBlank(value)) {
+      int code = parseCountryCode(value);
+      if (code > 0) {
+        return code;
+      }
+      logger.error("PhoneNumberNormalizer: invalid value " + value + " for "
+          + Constants.DEFAULT_COUNTRY_CODE);
+    }
+    return DEFAULT_COUNTRY_CODE;
+  }
+
+  /**
+   * Phone number in canonical form.
+   */
+  public static final class PhoneNumber {
+    private final int countryCode;
+    private final long e164;
+    private final long nationalNumber;
+
+    PhoneNumber(int countryCode, long e164, long nationalNumber) {
+      this.countryCode = countryCode;
+      this.e164 = e164;
+      this.nationalNumber = nationalNumber;
+    }
+
+    public int getCountryCode() {
+      return countryCode;
+    }
+
+    /** Country code followed by the national number, as a long. */
+    public long getE164() {
+      return e164;
+    }
+
+    /** National significant number, without the country code or a trunk prefix. */
+    public long getNationalNumber() {
+      return nationalNumber;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof PhoneNumber && ((PhoneNumber) other).e164 == e164;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(e164);
+    }
+
+    /** Returns the number in E.164 form, such as +919876543210. */
+    @Override
+    public String toString() {
+      return "+" + e164;
+    }
+  }
+}
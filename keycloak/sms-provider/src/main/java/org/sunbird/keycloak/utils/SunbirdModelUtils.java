@@ -13,9 +13,11 @@ import org.jboss.logging.Logger;
 import org.keycloak.authentication.AuthenticationFlowContext;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.ModelDuplicateException;
+import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.sunbird.keycloak.resetcredential.sms.KeycloakSmsAuthenticatorConstants;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
 
 /**
  * 
@@ -34,11 +36,15 @@ public class SunbirdModelUtils {
   public static UserModel getUserByNameEmailOrPhone(AuthenticationFlowContext context,
       String username) {
     String numberRegex = "\\d+";
-    KeycloakSession session = context.getSession();
     logger.info("SunbirdModelUtils@getUser " + username);
-    if (username.matches(numberRegex)) {
-      List<UserModel> userModels = session.users().searchForUserByUserAttribute(
-          KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, username, context.getRealm());
+    PhoneNumber phone = PhoneNumberNormalizer.normalize(username);
+    if (phone != null || username.matches(numberRegex)) {
+      String indexKey = phone != null ? phone.toString() : username;
+      UserModel indexed = getIndexedUserByPhone(context, indexKey);
+      if (indexed != null) {
+        return indexed;
+      }
+      List<UserModel> userModels = searchByPhone(context, phone, username);
       if (userModels != null && !userModels.isEmpty()) {
         // multiple user found for same attribute
     	for(UserModel model : userModels) {
@@ -56,9 +62,12 @@ public class SunbirdModelUtils {
     	}
     	logger.info("SunbirdModelUtils@getUser user model size "+userModels.size());
     	if (userModels.size() > 1) {
+          PhoneIndex.getInstance().put(context.getRealm().getId(), indexKey, PhoneIndex.DUPLICATE);
           throw new ModelDuplicateException(Constants.MULTIPLE_USER_ASSOCIATED_WITH_PHONE,
               KeycloakSmsAuthenticatorConstants.ATTR_MOBILE);
         }
+        PhoneIndex.getInstance().put(context.getRealm().getId(), indexKey,
+            userModels.get(0).getId());
         return userModels.get(0);
       } else {
         return KeycloakModelUtils.findUserByNameOrEmail(context.getSession(), context.getRealm(),
@@ -70,4 +79,80 @@ public class SunbirdModelUtils {
     }
   }
 
+  /**
+   * Returns the user the phone index maps the phone to, after checking the user still holds it,
+   * or null if the phone has to be searched for. The index only answers while the user export
+   * sync drops changed phones, so a second user given the phone is not missed.
+   */
+  private static UserModel getIndexedUserByPhone(AuthenticationFlowContext context,
+      String phone) {
+    RealmModel realm = context.getRealm();
+    String userId = PhoneIndex.getInstance().get(realm.getId(), phone);
+    if (userId == null) {
+      return null;
+    }
+    if (PhoneIndex.DUPLICATE.equals(userId)) {
+      logger.info("SunbirdModelUtils@getUser multiple users indexed for phone");
+      throw new ModelDuplicateException(Constants.MULTIPLE_USER_ASSOCIATED_WITH_PHONE,
+          KeycloakSmsAuthenticatorConstants.ATTR_MOBILE);
+    }
+    UserModel user = context.getSession().users().getUserById(userId, realm);
+    if (user == null || !holdsPhone(user, phone)) {
+      logger.debug("SunbirdModelUtils@getUser indexed user " + userId + " no longer holds phone");
+      PhoneIndex.getInstance().remove(realm.getId(), phone);
+      return null;
+    }
+    logger.info("SunbirdModelUtils@getUser indexed user id=" + userId);
+    return user;
+  }
+
+  /**
+   * Searches the users holding the phone. The federated user service is searched by the E.164
+   * number and local users by the national number they are stored with; only users whose phone,
+   * read in their own country code, is the submitted number are kept, so a national number held
+   * in another country never matches.
+   */
+  private static List<UserModel> searchByPhone(AuthenticationFlowContext context,
+      PhoneNumber phone, String username) {
+    KeycloakSession session = context.getSession();
+    RealmModel realm = context.getRealm();
+    if (phone == null) {
+      List<UserModel> users = session.users().searchForUserByUserAttribute(
+          KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, username, realm);
+      return users != null ? users : new ArrayList<>();
+    }
+    List<UserModel> found = new ArrayList<>();
+    List<UserModel> users = session.users().searchForUserByUserAttribute(
+        KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, phone.toString(), realm);
+    if (users != null) {
+      found.addAll(users);
+    }
+    users = session.userLocalStorage().searchForUserByUserAttribute(
+        KeycloakSmsAuthenticatorConstants.ATTR_MOBILE, Long.toString(phone.getNationalNumber()),
+        realm);
+    if (users != null) {
+      found.addAll(users);
+    }
+    String e164 = phone.toString();
+    Set<String> ids = new HashSet<>();
+    return found.stream().filter(user -> ids.add(user.getId()) && holdsPhone(user, e164))
+        .collect(Collectors.toList());
+  }
+
+  private static boolean holdsPhone(UserModel user, String phone) {
+    List<String> phones = user.getAttribute(KeycloakSmsAuthenticatorConstants.ATTR_MOBILE);
+    PhoneNumber expected = PhoneNumberNormalizer.normalize(phone);
+    if (phones == null || expected == null) {
+      return false;
+    }
+    String countryCode =
+        user.getFirstAttribute(KeycloakSmsAuthenticatorConstants.ATTR_COUNTRY_CODE);
+    for (String value : phones) {
+      if (expected.equals(PhoneNumberNormalizer.normalizeStored(value, countryCode))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
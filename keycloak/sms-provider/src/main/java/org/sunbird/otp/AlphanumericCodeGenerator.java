@@ -0,0 +1,23 @@
+package org.sunbird.otp;
+
+import java.security.SecureRandom;
+
+/**
+ * Upper case letters and digits. Characters that are easily confused when read from a phone
+ * screen (0/O, 1/I) are left out.
+ */
+public class AlphanumericCodeGenerator implements OtpCodeGenerator {
+
+    private static final char[] ALPHABET = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ".toCharArray();
+
+    @Override
+    public String generate(int length) {
+        OtpCodeGenerators.checkLength(length);
+        SecureRandom random = SecureRandomHolder.current();
+        char[] code = new char[length];
+        for (int i = 0; i < length; i++) {
+            code[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(code);
+    }
+}
@@ -0,0 +1,22 @@
+package org.sunbird.otp;
+
+import java.security.SecureRandom;
+
+/**
+ * Digits only, uniformly drawn from [10^(length-1), 10^length). The first digit is never zero so
+ * the code always has exactly the requested length, even when it is later handled as a number.
+ */
+public class NumericCodeGenerator implements OtpCodeGenerator {
+
+    @Override
+    public String generate(int length) {
+        OtpCodeGenerators.checkLength(length);
+        SecureRandom random = SecureRandomHolder.current();
+        char[] code = new char[length];
+        code[0] = (char) ('1' + random.nextInt(9));
+        for (int i = 1; i < length; i++) {
+            code[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(code);
+    }
+}
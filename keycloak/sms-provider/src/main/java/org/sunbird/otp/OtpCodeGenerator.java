@@ -0,0 +1,11 @@
+package org.sunbird.otp;
+
+/**
+ * Generates one time codes of a given length.
+ *
+ * Implementations must be thread safe, a single instance is shared by all logins.
+ */
+public interface OtpCodeGenerator {
+
+    String generate(int length);
+}
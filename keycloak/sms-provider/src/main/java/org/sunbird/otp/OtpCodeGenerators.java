@@ -0,0 +1,24 @@
+package org.sunbird.otp;
+
+/**
+ * Entry point for OTP generation. Codes are generated on demand and never kept ready in memory,
+ * where they could be read from a heap dump before they are handed out.
+ */
+public final class OtpCodeGenerators {
+
+    static final int MAX_LENGTH = 32;
+
+    private OtpCodeGenerators() {
+    }
+
+    public static String generate(OtpCodeType type, int length) {
+        checkLength(length);
+        return type.getGenerator().generate(length);
+    }
+
+    static void checkLength(int length) {
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Code length must be between 1 and " + MAX_LENGTH + ", got " + length);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.sunbird.otp;
+
+/**
+ * Code formats that can be selected in the authenticator configuration.
+ */
+public enum OtpCodeType {
+    NUMERIC("numeric", new NumericCodeGenerator()),
+    ZERO_PADDED_NUMERIC("padded-numeric", new ZeroPaddedNumericCodeGenerator()),
+    ALPHANUMERIC("alphanumeric", new AlphanumericCodeGenerator());
+
+    private final String configValue;
+    private final OtpCodeGenerator generator;
+
+    OtpCodeType(String configValue, OtpCodeGenerator generator) {
+        this.configValue = configValue;
+        this.generator = generator;
+    }
+
+    public String getConfigValue() {
+        return configValue;
+    }
+
+    public OtpCodeGenerator getGenerator() {
+        return generator;
+    }
+
+    public static OtpCodeType fromConfig(String value, OtpCodeType defaultValue) {
+        if (value != null) {
+            for (OtpCodeType type : values()) {
+                if (type.configValue.equalsIgnoreCase(value.trim())) {
+                    return type;
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,18 @@
+package org.sunbird.otp;
+
+import java.security.SecureRandom;
+
+/**
+ * Per thread {@link SecureRandom}, so code generation never contends on a shared instance.
+ */
+final class SecureRandomHolder {
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private SecureRandomHolder() {
+    }
+
+    static SecureRandom current() {
+        return RANDOM.get();
+    }
+}
@@ -0,0 +1,21 @@
+package org.sunbird.otp;
+
+import java.security.SecureRandom;
+
+/**
+ * Digits only, uniformly drawn from [0, 10^length) and left padded with zeros to the requested
+ * length.
+ */
+public class ZeroPaddedNumericCodeGenerator implements OtpCodeGenerator {
+
+    @Override
+    public String generate(int length) {
+        OtpCodeGenerators.checkLength(length);
+        SecureRandom random = SecureRandomHolder.current();
+        char[] code = new char[length];
+        for (int i = 0; i < length; i++) {
+            code[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(code);
+    }
+}
@@ -0,0 +1,144 @@
+package org.sunbird.sms;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Sends each message through the provider configured for the longest matching E.164 prefix of
+ * the destination, falling back to the default provider when no prefix matches.
+ *
+ * Prefixes are held in a digit trie packed into arrays, built once when the configuration is
+ * loaded; a lookup walks the digits of the number and allocates nothing.
+ */
+public class PrefixRoutingSmsProvider implements ISmsProvider {
+
+    private static Logger logger = Logger.getLogger(PrefixRoutingSmsProvider.class);
+
+    private static final int RADIX = 10;
+
+    private final ISmsProvider defaultProvider;
+    // children[node * RADIX + digit] is the child node, 0 when absent (the root is never a child)
+    private int[] children = new int[RADIX * 8];
+    private ISmsProvider[] providers = new ISmsProvider[8];
+    private int nodeCount = 1;
+
+    public PrefixRoutingSmsProvider(ISmsProvider defaultProvider) {
+        this.defaultProvider = defaultProvider;
+    }
+
+    /**
+     * Adds a route, only to be called while the configuration is being loaded.
+     *
+     * @param prefix E.164 prefix such as +91 or +1415
+     */
+    public void addRoute(String prefix, ISmsProvider provider) {
+        if (!isValidPrefix(prefix)) {
+            throw new IllegalArgumentException("Invalid E.164 prefix " + prefix);
+        }
+        int node = 0;
+        for (int i = 1; i < prefix.length(); i++) {
+            int slot = node * RADIX + (prefix.charAt(i) - '0');
+            if (children[slot] == 0) {
+                // newNode() may grow children, so assign after it returns
+                int child = newNode();
+                children[slot] = child;
+            }
+            node = children[slot];
+        }
+        providers[node] = provider;
+    }
+
+    public static boolean isValidPrefix(String prefix) {
+        if (prefix == null || prefix.length() < 2 || prefix.charAt(0) != '+') {
+            return false;
+        }
+        for (int i = 1; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int newNode() {
+        if (nodeCount == providers.length) {
+            providers = Arrays.copyOf(providers, nodeCount * 2);
+            children = Arrays.copyOf(children, nodeCount * 2 * RADIX);
+        }
+        return nodeCount++;
+    }
+
+    /**
+     * Returns the provider of the longest prefix matching the number. Only numbers in E.164 form,
+     * starting with +, are matched; a national number could match the prefix of another country,
+     * so it goes to the default provider. Spaces and dashes after the + are skipped.
+     */
+    public ISmsProvider route(String phoneNumber) {
+        ISmsProvider match = defaultProvider;
+        int start = 0;
+        while (start < phoneNumber.length() && phoneNumber.charAt(start) == ' ') {
+            start++;
+        }
+        if (start == phoneNumber.length() || phoneNumber.charAt(start) != '+') {
+            return match;
+        }
+        int node = 0;
+        for (int i = start + 1; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            node = children[node * RADIX + (c - '0')];
+            if (node == 0) {
+                break;
+            }
+            if (providers[node] != null) {
+                match = providers[node];
+            }
+        }
+        return match;
+    }
+
+    @Override
+    public void configure(Map<String, String> configurations) {
+        // Routes are configured individually when the table is built
+    }
+
+    @Override
+    public void close() {
+        defaultProvider.close();
+        for (int node = 1; node < nodeCount; node++) {
+            if (providers[node] != null) {
+                providers[node].close();
+            }
+        }
+    }
+
+    @Override
+    public boolean send(String phoneNumber, String smsText) {
+        ISmsProvider provider = route(phoneNumber);
+        if (provider == null) {
+            logger.error("PrefixRoutingSmsProvider@send - no route for " + phoneNumber);
+            return false;
+        }
+        return provider.send(phoneNumber, smsText);
+    }
+
+    @Override
+    public CompletionStage<SmsDeliveryResult> sendAsync(SmsMessage message) {
+        ISmsProvider provider = route(message.getPhoneNumber());
+        if (provider == null) {
+            logger.error("PrefixRoutingSmsProvider@send - no route for " + message.getPhoneNumber());
+            return CompletableFuture.completedFuture(SmsDeliveryResult.failed("prefix-routing", "no route"));
+        }
+        return provider.sendAsync(message);
+    }
+}
@@ -0,0 +1,201 @@
+package org.sunbird.sms;
+
+import org.jboss.logging.Logger;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+import org.sunbird.utils.ThreadPoolUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends through the fastest healthy provider among several, failing over to the next one until
+ * the message is accepted or the deadline is reached.
+ *
+ * Each provider's latency and error rate are tracked as exponentially weighted moving averages.
+ * A provider whose error rate crosses the threshold is ejected; once the probe interval has passed
+ * a single request is let through to it, and it rejoins the rotation if that request succeeds.
+ */
+public class RoutingSmsProvider implements ISmsProvider {
+
+    private static Logger logger = Logger.getLogger(RoutingSmsProvider.class);
+
+    private static final String NAME = "routing";
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final double EJECT_ERROR_RATE = 0.5;
+    private static final int MIN_SAMPLES_BEFORE_EJECT = 3;
+
+    private final List<ProviderHealth> providers;
+    private final long deadlineMillis;
+    private final long probeIntervalMillis;
+
+    public RoutingSmsProvider(Map<String, ISmsProvider> providers, long deadlineMillis, long probeIntervalMillis) {
+        List<ProviderHealth> health = new ArrayList<>(providers.size());
+        for (Map.Entry<String, ISmsProvider> entry : providers.entrySet()) {
+            health.add(new ProviderHealth(entry.getKey(), entry.getValue()));
+        }
+        this.providers = Collections.unmodifiableList(health);
+        this.deadlineMillis = deadlineMillis;
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    @Override
+    public void configure(Map<String, String> configurations) {
+        for (ProviderHealth provider : providers) {
+            provider.provider.configure(configurations);
+        }
+    }
+
+    @Override
+    public CompletionStage<SmsDeliveryResult> sendAsync(SmsMessage message) {
+        long deadline = System.currentTimeMillis() + deadlineMillis;
+        return attempt(message, candidates(), 0, deadline, null);
+    }
+
+    /**
+     * Sends through the given candidate, moving on to the next one when the message is not
+     * accepted. Each attempt gets an equal share of the time left, so a hanging provider does not
+     * use up the whole deadline. An attempt still pending when its time is up counts as failed;
+     * the provider may yet deliver it, so a late duplicate of the same message is possible.
+     */
+    private CompletionStage<SmsDeliveryResult> attempt(SmsMessage message, List<ProviderHealth> candidates,
+            int index, long deadline, SmsDeliveryResult last) {
+        if (index >= candidates.size()) {
+            return CompletableFuture.completedFuture(last != null ? last : SmsDeliveryResult.failed(NAME, "no provider"));
+        }
+        long start = System.currentTimeMillis();
+        long remaining = deadline - start;
+        if (remaining <= 0) {
+            logger.error("RoutingSmsProvider@send - deadline of " + deadlineMillis + " ms reached for " + message.getPhoneNumber());
+            return CompletableFuture.completedFuture(SmsDeliveryResult.failed(NAME, "deadline reached"));
+        }
+
+        ProviderHealth provider = candidates.get(index);
+        CompletableFuture<SmsDeliveryResult> result;
+        try {
+            result = provider.provider.sendAsync(message).toCompletableFuture();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.completedFuture(SmsDeliveryResult.failed(provider.name, e.getMessage()));
+        }
+
+        return withTimeout(result, remaining / (candidates.size() - index), provider.name)
+                .exceptionally(e -> SmsDeliveryResult.failed(provider.name, e.getMessage()))
+                .thenCompose(outcome -> {
+                    provider.record(outcome.isSent(), System.currentTimeMillis() - start);
+                    if (outcome.isSent()) {
+                        return CompletableFuture.completedFuture(outcome);
+                    }
+                    logger.warn("RoutingSmsProvider@send - provider " + provider.name + " could not send, trying next provider");
+                    return attempt(message, candidates, index + 1, deadline, outcome);
+                });
+    }
+
+    private static CompletableFuture<SmsDeliveryResult> withTimeout(CompletableFuture<SmsDeliveryResult> result,
+            long timeoutMillis, String providerName) {
+        if (result.isDone()) {
+            return result;
+        }
+        CompletableFuture<SmsDeliveryResult> timeout = new CompletableFuture<>();
+        ScheduledFuture<?> timer = ThreadPoolUtil.getScheduler().schedule(
+                () -> timeout.complete(SmsDeliveryResult.failed(providerName, "timed out")),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((outcome, e) -> timer.cancel(false));
+        return result.applyToEither(timeout, Function.identity());
+    }
+
+    /**
+     * Healthy providers ordered by latency, preceded by at most one ejected provider due for a
+     * probe; if the probe fails the message still fails over to the healthy ones. When every
+     * provider is ejected they are all returned, so a message is never dropped without an attempt.
+     */
+    private List<ProviderHealth> candidates() {
+        long now = System.currentTimeMillis();
+        List<ProviderHealth> healthy = new ArrayList<>(providers.size());
+        ProviderHealth probe = null;
+        for (ProviderHealth provider : providers) {
+            if (!provider.isEjected()) {
+                healthy.add(provider);
+            } else if (probe == null && provider.tryProbe(now, probeIntervalMillis)) {
+                probe = provider;
+            }
+        }
+
+        if (healthy.isEmpty() && probe == null) {
+            return providers;
+        }
+        healthy.sort(Comparator.comparingDouble(ProviderHealth::getLatency));
+        if (probe != null) {
+            healthy.add(0, probe);
+        }
+        return healthy;
+    }
+
+    @Override
+    public void close() {
+        for (ProviderHealth provider : providers) {
+            provider.provider.close();
+        }
+    }
+
+    private static class ProviderHealth {
+        private final String name;
+        private final ISmsProvider provider;
+
+        private double latency;
+        private double errorRate;
+        private long samples;
+        private boolean ejected;
+        private long lastProbeAt;
+
+        ProviderHealth(String name, ISmsProvider provider) {
+            this.name = name;
+            this.provider = provider;
+        }
+
+        synchronized double getLatency() {
+            return latency;
+        }
+
+        synchronized boolean isEjected() {
+            return ejected;
+        }
+
+        synchronized boolean tryProbe(long now, long probeIntervalMillis) {
+            if (now - lastProbeAt < probeIntervalMillis) {
+                return false;
+            }
+            lastProbeAt = now;
+            return true;
+        }
+
+        synchronized void record(boolean success, long elapsedMillis) {
+            double error = success ? 0.0 : 1.0;
+            if (samples++ == 0) {
+                latency = elapsedMillis;
+                errorRate = error;
+            } else {
+                latency += EWMA_WEIGHT * (elapsedMillis - latency);
+                errorRate += EWMA_WEIGHT * (error - errorRate);
+            }
+
+            if (ejected && success) {
+                ejected = false;
+                errorRate = EJECT_ERROR_RATE / 2;
+                logger.info("RoutingSmsProvider - provider " + name + " recovered, back in rotation");
+            } else if (!ejected && samples >= MIN_SAMPLES_BEFORE_EJECT && errorRate >= EJECT_ERROR_RATE) {
+                ejected = true;
+                lastProbeAt = System.currentTimeMillis();
+                logger.warn("RoutingSmsProvider - provider " + name + " ejected, error rate " + errorRate);
+            }
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package org.sunbird.sms;
 
+import org.jboss.logging.Logger;
+
 import java.util.Map;
 
 public class SMSConfigurationUtil {
 
+    private static Logger logger = Logger.getLogger(SMSConfigurationUtil.class);
+
     public static String getConfigString(Map<String, String> config, String configName) {
         return getConfigString(config, configName, null);
     }
@@ -20,4 +24,33 @@ public class SMSConfigurationUtil {
         return value;
     }
 
+    /**
+     * Returns the configured number, or the default value when it is missing or not a number.
+     */
+    public static long getConfigLong(Map<String, String> config, String configName, long defaultValue) {
+        String value = getConfigString(config, configName);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.error("SMSConfigurationUtil - can not convert " + value + " of " + configName + " to a number.");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the configured number, or the default value when it is missing, not a number or out
+     * of the int range.
+     */
+    public static int getConfigInt(Map<String, String> config, String configName, int defaultValue) {
+        long value = getConfigLong(config, configName, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            logger.error("SMSConfigurationUtil - " + value + " of " + configName + " is out of range.");
+            return defaultValue;
+        }
+        return (int) value;
+    }
+
 }
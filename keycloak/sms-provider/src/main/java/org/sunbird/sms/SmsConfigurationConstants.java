@@ -20,4 +20,16 @@ public final class SmsConfigurationConstants {
     public static final String CONF_SMS_SENDER = "sender";
     public static final String CONF_SMS_COUNTRY = "country";
     public static final String CONF_SMS_ROUTE = "route";
+    public static final String CONF_SMS_MAX_CONNECTIONS = "sms_max_connections";
+    public static final String CONF_SMS_CONNECT_TIMEOUT = "sms_connect_timeout_ms";
+    public static final String CONF_SMS_SOCKET_TIMEOUT = "sms_socket_timeout_ms";
+    public static final String CONF_SMS_CONNECTION_REQUEST_TIMEOUT = "sms_connection_request_timeout_ms";
+    public static final String CONF_SMS_IDLE_TIMEOUT = "sms_idle_timeout_seconds";
+    public static final String CONF_SMS_BATCH_WINDOW = "sms_batch_window_ms";
+    public static final String CONF_SMS_BATCH_MAX_SIZE = "sms_batch_max_size";
+    public static final String CONF_SMS_PROVIDERS = "sms_providers";
+    public static final String CONF_SMS_DEADLINE = "sms_deadline_ms";
+    public static final String CONF_SMS_PROBE_INTERVAL = "sms_probe_interval_seconds";
+    public static final String CONF_SMS_ROUTE_PREFIX = "sms_route_";
+    public static final String CONF_SMS_REGION = "sms_region";
 }
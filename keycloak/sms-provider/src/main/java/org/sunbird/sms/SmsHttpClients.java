@@ -0,0 +1,174 @@
+package org.sunbird.sms;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.jboss.logging.Logger;
+import org.sunbird.utils.ThreadPoolUtil;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled keep-alive HTTP clients shared by the SMS providers, one per gateway.
+ *
+ * Pool size, timeouts and idle eviction are read from the provider configuration. A client is
+ * reused as long as the settings of its gateway do not change; when they do, a new client replaces
+ * it and the old one is closed after a grace period so in-flight requests can complete.
+ */
+public class SmsHttpClients {
+
+    private static Logger logger = Logger.getLogger(SmsHttpClients.class);
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS = 1000;
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+    private static final long CLOSE_GRACE_PERIOD_SECONDS = 60;
+
+    private static final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+
+    private SmsHttpClients() {
+    }
+
+    /**
+     * Returns the shared client of the given gateway, creating it or replacing it when the
+     * connection settings in the configuration differ from the ones it was built with.
+     */
+    public static CloseableHttpClient getClient(String gateway, Map<String, String> configurations) {
+        Settings settings = new Settings(configurations);
+        PooledClient pooled = clients.get(gateway);
+        if (pooled != null && pooled.settings.equals(settings)) {
+            return pooled.client;
+        }
+
+        PooledClient[] replaced = new PooledClient[1];
+        PooledClient current = clients.compute(gateway, (key, existing) -> {
+            if (existing != null && existing.settings.equals(settings)) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return new PooledClient(settings, createClient(settings));
+        });
+
+        if (replaced[0] != null) {
+            closeLater(gateway, replaced[0].client);
+        }
+        return current.client;
+    }
+
+    private static CloseableHttpClient createClient(Settings settings) {
+        logger.info("SmsHttpClients@createClient - max connections " + settings.maxConnections
+                + ", connect timeout " + settings.connectTimeoutMillis + " ms, socket timeout "
+                + settings.socketTimeoutMillis + " ms, idle timeout " + settings.idleTimeoutSeconds + " s");
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(settings.maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(settings.connectTimeoutMillis)
+                .setSocketTimeout(settings.socketTimeoutMillis)
+                .setConnectionRequestTimeout(settings.connectionRequestTimeoutMillis)
+                .build();
+
+        long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(settings.idleTimeoutSeconds);
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement he = it.nextElement();
+                if (he.getValue() != null && he.getName().equalsIgnoreCase("timeout")) {
+                    try {
+                        return Math.min(Long.parseLong(he.getValue()) * 1000, idleTimeoutMillis);
+                    } catch (NumberFormatException ignore) {
+                        // Fall back to the idle timeout
+                    }
+                }
+            }
+            return idleTimeoutMillis;
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(settings.idleTimeoutSeconds, TimeUnit.SECONDS)
+                .useSystemProperties()
+                .build();
+    }
+
+    private static void closeLater(String gateway, CloseableHttpClient client) {
+        ThreadPoolUtil.getScheduler().schedule(() -> {
+            try {
+                client.close();
+                logger.debug("SmsHttpClients@closeLater - closed previous client of " + gateway);
+            } catch (IOException e) {
+                logger.warn("SmsHttpClients@closeLater - failed to close previous client of " + gateway, e);
+            }
+        }, CLOSE_GRACE_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static class PooledClient {
+        private final Settings settings;
+        private final CloseableHttpClient client;
+
+        PooledClient(Settings settings, CloseableHttpClient client) {
+            this.settings = settings;
+            this.client = client;
+        }
+    }
+
+    private static class Settings {
+        private final int maxConnections;
+        private final int connectTimeoutMillis;
+        private final int socketTimeoutMillis;
+        private final int connectionRequestTimeoutMillis;
+        private final long idleTimeoutSeconds;
+
+        Settings(Map<String, String> configurations) {
+            maxConnections = Math.max(1, SMSConfigurationUtil.getConfigInt(configurations,
+                    SmsConfigurationConstants.CONF_SMS_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS));
+            connectTimeoutMillis = SMSConfigurationUtil.getConfigInt(configurations,
+                    SmsConfigurationConstants.CONF_SMS_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT_MILLIS);
+            socketTimeoutMillis = SMSConfigurationUtil.getConfigInt(configurations,
+                    SmsConfigurationConstants.CONF_SMS_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT_MILLIS);
+            connectionRequestTimeoutMillis = SMSConfigurationUtil.getConfigInt(configurations,
+                    SmsConfigurationConstants.CONF_SMS_CONNECTION_REQUEST_TIMEOUT, DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS);
+            idleTimeoutSeconds = Math.max(1, SMSConfigurationUtil.getConfigInt(configurations,
+                    SmsConfigurationConstants.CONF_SMS_IDLE_TIMEOUT, (int) DEFAULT_IDLE_TIMEOUT_SECONDS));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Settings)) {
+                return false;
+            }
+            Settings other = (Settings) o;
+            return maxConnections == other.maxConnections
+                    && connectTimeoutMillis == other.connectTimeoutMillis
+                    && socketTimeoutMillis == other.socketTimeoutMillis
+                    && connectionRequestTimeoutMillis == other.connectionRequestTimeoutMillis
+                    && idleTimeoutSeconds == other.idleTimeoutSeconds;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxConnections, connectTimeoutMillis, socketTimeoutMillis,
+                    connectionRequestTimeoutMillis, idleTimeoutSeconds);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.sunbird.sms;
+
+import com.amazonaws.util.StringUtils;
+import org.jboss.logging.Logger;
+import org.sunbird.sms.amazonsns.AmazonSnsProvider;
+import org.sunbird.sms.msg91.Msg91SmsProvider;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.utils.JsonUtil;
+import org.sunbird.utils.ThreadPoolUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the SMS provider built from the provider configuration file (Msg91Creds.json). The
+ * providers to use are listed in sms_providers (msg91 by default); several of them are routed
+ * through a {@link RoutingSmsProvider}. Destinations can be routed by E.164 prefix with entries
+ * such as "sms_route_+254": "sns" or "sms_route_+91": "msg91,SENDER,4".
+ *
+ * The file is read, validated and turned into a configured provider once; a background check on
+ * the file's last modified time reloads it and swaps the provider atomically, then closes the
+ * previous one so the messages it still holds back are sent. Callers of
+ * {@link #getProvider()} never touch the file system. A configuration that fails to load or
+ * validate is logged and the previous provider is kept.
+ */
+public class SmsProviderRegistry {
+
+    private static Logger logger = Logger.getLogger(SmsProviderRegistry.class);
+
+    private static final long DEFAULT_CHECK_INTERVAL_SECONDS = 10;
+
+    private static final String PROVIDER_MSG91 = "msg91";
+    private static final String PROVIDER_SNS = "sns";
+    private static final long DEFAULT_DEADLINE_MILLIS = 10000;
+    private static final long DEFAULT_PROBE_INTERVAL_SECONDS = 30;
+
+    private static final Map<String, String[]> MANDATORY_CONFIGURATIONS = new HashMap<>();
+
+    static {
+        MANDATORY_CONFIGURATIONS.put(PROVIDER_MSG91, new String[]{
+                SmsConfigurationConstants.CONF_AUTH_KEY,
+                SmsConfigurationConstants.CONF_SMS_SENDER,
+                SmsConfigurationConstants.CONF_SMS_ROUTE,
+                SmsConfigurationConstants.CONF_SMS_COUNTRY,
+                SmsConfigurationConstants.CONF_SMS_METHOD_TYPE
+        });
+        MANDATORY_CONFIGURATIONS.put(PROVIDER_SNS, new String[]{
+                SmsConfigurationConstants.CONF_SMS_TOKEN,
+                SmsConfigurationConstants.CONF_SMS_SECRET
+        });
+    }
+
+    private final File configFile;
+    private final long checkIntervalSeconds;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private volatile boolean started;
+
+    public SmsProviderRegistry(String configFilePath) {
+        this(configFilePath, DEFAULT_CHECK_INTERVAL_SECONDS);
+    }
+
+    public SmsProviderRegistry(String configFilePath, long checkIntervalSeconds) {
+        this.configFile = new File(configFilePath);
+        this.checkIntervalSeconds = checkIntervalSeconds;
+    }
+
+    /**
+     * Returns the currently configured provider, or null when no valid configuration was loaded.
+     */
+    public ISmsProvider getProvider() {
+        start();
+        return snapshot.get().provider;
+    }
+
+    public Map<String, String> getConfigurations() {
+        start();
+        return snapshot.get().configurations;
+    }
+
+    // Callers racing the first load wait for it rather than finding no provider
+    private void start() {
+        if (started) {
+            return;
+        }
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            reloadIfModified();
+            ThreadPoolUtil.getScheduler().scheduleWithFixedDelay(this::reloadIfModified,
+                    checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS);
+            started = true;
+        }
+    }
+
+    synchronized void reloadIfModified() {
+        try {
+            long lastModified = configFile.lastModified();
+            Snapshot current = snapshot.get();
+            if (lastModified == 0L || lastModified == current.lastModified) {
+                return;
+            }
+
+            Map<String, String> configurations = JsonUtil.readFromJson(configFile.getAbsolutePath());
+            List<String> errors = validate(configurations);
+            if (configurations == null || !errors.isEmpty()) {
+                logger.error("SmsProviderRegistry@reloadIfModified - invalid configuration in " + configFile
+                        + (errors.isEmpty() ? "" : ": " + errors) + ", keeping previous provider");
+                // Do not retry the same broken file on every check
+                snapshot.set(new Snapshot(lastModified, current.configurations, current.provider));
+                return;
+            }
+
+            configurations = Collections.unmodifiableMap(configurations);
+            snapshot.set(new Snapshot(lastModified, configurations, createProvider(configurations)));
+            logger.info("SmsProviderRegistry@reloadIfModified - loaded SMS provider configuration from " + configFile);
+            // Sends already started on the previous provider complete on their own, held back ones go out now
+            if (current.provider != null) {
+                current.provider.close();
+            }
+        } catch (RuntimeException e) {
+            logger.error("SmsProviderRegistry@reloadIfModified - failed to load " + configFile, e);
+        }
+    }
+
+    /**
+     * Builds the default provider and, when sms_route_&lt;prefix&gt; entries are present, a
+     * {@link PrefixRoutingSmsProvider} sending each destination through the provider of its
+     * longest matching prefix.
+     */
+    private static ISmsProvider createProvider(Map<String, String> configurations) {
+        ISmsProvider defaultProvider = createProvider(getProviderNames(configurations), configurations);
+
+        PrefixRoutingSmsProvider prefixRouting = null;
+        for (Map.Entry<String, String> entry : configurations.entrySet()) {
+            if (!entry.getKey().startsWith(SmsConfigurationConstants.CONF_SMS_ROUTE_PREFIX)) {
+                continue;
+            }
+            if (prefixRouting == null) {
+                prefixRouting = new PrefixRoutingSmsProvider(defaultProvider);
+            }
+            String prefix = entry.getKey().substring(SmsConfigurationConstants.CONF_SMS_ROUTE_PREFIX.length());
+            prefixRouting.addRoute(prefix, createProvider(getProviderNames(entry.getValue()),
+                    getRouteConfigurations(configurations, entry.getValue())));
+            logger.info("SmsProviderRegistry@createProvider - route " + prefix + " -> " + entry.getValue());
+        }
+        return prefixRouting != null ? prefixRouting : defaultProvider;
+    }
+
+    /**
+     * Builds the given providers. With more than one they are wrapped in a
+     * {@link RoutingSmsProvider}, in the listed order.
+     */
+    private static ISmsProvider createProvider(List<String> names, Map<String, String> configurations) {
+        Map<String, ISmsProvider> providers = new LinkedHashMap<>();
+        for (String name : names) {
+            ISmsProvider provider = PROVIDER_SNS.equals(name) ? new AmazonSnsProvider() : new Msg91SmsProvider();
+            provider.configure(configurations);
+            providers.put(name, provider);
+        }
+        if (providers.size() == 1) {
+            return providers.values().iterator().next();
+        }
+
+        long deadlineMillis = SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_DEADLINE, DEFAULT_DEADLINE_MILLIS);
+        long probeIntervalSeconds = SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_PROBE_INTERVAL,
+                DEFAULT_PROBE_INTERVAL_SECONDS);
+        logger.info("SmsProviderRegistry@createProvider - routing between " + providers.keySet());
+        return new RoutingSmsProvider(providers, deadlineMillis, TimeUnit.SECONDS.toMillis(probeIntervalSeconds));
+    }
+
+    private static List<String> getProviderNames(Map<String, String> configurations) {
+        String value = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_PROVIDERS, PROVIDER_MSG91);
+        return split(value, ",");
+    }
+
+    /**
+     * Providers of a route entry, the first field of "provider[|provider...],sender,route,country".
+     */
+    private static List<String> getProviderNames(String route) {
+        return split(route.split(",", -1)[0], "\\|");
+    }
+
+    /**
+     * Configuration of a route entry: the shared configuration with the sender, route and country
+     * of the entry, when given, in place of the default ones.
+     */
+    private static Map<String, String> getRouteConfigurations(Map<String, String> configurations, String route) {
+        String[] fields = route.split(",", -1);
+        Map<String, String> routeConfigurations = new HashMap<>(configurations);
+        String[] keys = {SmsConfigurationConstants.CONF_SMS_SENDER, SmsConfigurationConstants.CONF_SMS_ROUTE,
+                SmsConfigurationConstants.CONF_SMS_COUNTRY};
+        for (int i = 0; i < keys.length && i + 1 < fields.length; i++) {
+            if (!fields[i + 1].trim().isEmpty()) {
+                routeConfigurations.put(keys[i], fields[i + 1].trim());
+            }
+        }
+        return Collections.unmodifiableMap(routeConfigurations);
+    }
+
+    private static List<String> split(String value, String separator) {
+        List<String> names = new ArrayList<>();
+        for (String name : value.split(separator)) {
+            name = name.trim().toLowerCase();
+            if (!name.isEmpty() && !names.contains(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static List<String> validate(Map<String, String> configurations) {
+        List<String> errors = new ArrayList<>();
+        if (configurations == null) {
+            return errors;
+        }
+        validate(SmsConfigurationConstants.CONF_SMS_PROVIDERS, getProviderNames(configurations), configurations, errors);
+        for (Map.Entry<String, String> entry : configurations.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(SmsConfigurationConstants.CONF_SMS_ROUTE_PREFIX)) {
+                continue;
+            }
+            if (!PrefixRoutingSmsProvider.isValidPrefix(key.substring(SmsConfigurationConstants.CONF_SMS_ROUTE_PREFIX.length()))) {
+                errors.add("invalid prefix in " + key);
+            } else if (entry.getValue() == null) {
+                errors.add("no provider in " + key);
+            } else {
+                validate(key, getProviderNames(entry.getValue()), getRouteConfigurations(configurations, entry.getValue()), errors);
+            }
+        }
+        return errors;
+    }
+
+    private static void validate(String key, List<String> names, Map<String, String> configurations, List<String> errors) {
+        if (names.isEmpty()) {
+            errors.add("no provider in " + key);
+        }
+        for (String name : names) {
+            String[] mandatory = MANDATORY_CONFIGURATIONS.get(name);
+            if (mandatory == null) {
+                errors.add("unknown provider " + name + " in " + key);
+                continue;
+            }
+            for (String mandatoryKey : mandatory) {
+                if (StringUtils.isNullOrEmpty(configurations.get(mandatoryKey))) {
+                    errors.add("missing " + mandatoryKey + " for " + name + " in " + key);
+                }
+            }
+        }
+    }
+
+    private static class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(0L, Collections.emptyMap(), null);
+
+        private final long lastModified;
+        private final Map<String, String> configurations;
+        private final ISmsProvider provider;
+
+        Snapshot(long lastModified, Map<String, String> configurations, ISmsProvider provider) {
+            this.lastModified = lastModified;
+            this.configurations = configurations;
+            this.provider = provider;
+        }
+    }
+}
@@ -1,52 +1,90 @@
 package org.sunbird.sms.amazonsns;
 
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sns.AmazonSNSAsync;
 import com.amazonaws.services.sns.model.MessageAttributeValue;
 import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
 import org.jboss.logging.Logger;
 import org.sunbird.aws.snsclient.SnsClientFactory;
 import org.sunbird.sms.SMSConfigurationUtil;
 import org.sunbird.sms.SmsConfigurationConstants;
 import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public class AmazonSnsProvider implements ISmsProvider {
 
     private static Logger logger = Logger.getLogger(AmazonSnsProvider.class);
 
+    private static final String PROVIDER = "sns";
+
     private Map<String, String> configurations;
+    private AmazonSNSAsync snsClient;
+    private Map<String, MessageAttributeValue> smsAttributes;
 
+    /**
+     * Publishes the message through the async SNS client, without blocking the caller.
+     */
     @Override
-    public boolean send(String phoneNumber, String smsText) {
-        logger.debug("AmazonSnsProvider@send : phoneNumber - " + phoneNumber + " & Sms text - " + smsText);
-
-        Map<String, MessageAttributeValue> smsAttributes = new HashMap<String, MessageAttributeValue>();
-        smsAttributes.put("AWS.SNS.SMS.SenderID", new MessageAttributeValue()
-                .withStringValue("HomeOffice")
-                .withDataType("String"));
-
-        String clientToken = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_TOKEN);
-        String clientSecret = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SECRET);
-
-        logger.debug("AmazonSnsProvider@send : clientToken - " + clientToken + " & clientSecret - " + clientSecret);
+    public CompletionStage<SmsDeliveryResult> sendAsync(SmsMessage message) {
+        logger.debug("AmazonSnsProvider@send : phoneNumber - " + message.getPhoneNumber() + " & Sms text - " + message.getText());
 
+        CompletableFuture<SmsDeliveryResult> result = new CompletableFuture<>();
+        if (snsClient == null) {
+            logger.error("AmazonSnsProvider@send : provider is not configured");
+            result.complete(SmsDeliveryResult.failed(PROVIDER, "not configured"));
+            return result;
+        }
 
         try {
-            SnsClientFactory.getSnsClient(clientToken, clientSecret).publish(new PublishRequest()
-                    .withMessage(smsText)
-                    .withPhoneNumber(phoneNumber)
-                    .withMessageAttributes(smsAttributes));
+            snsClient.publishAsync(new PublishRequest()
+                    .withMessage(message.getText())
+                    .withPhoneNumber(message.getPhoneNumber())
+                    .withMessageAttributes(smsAttributes), new AsyncHandler<PublishRequest, PublishResult>() {
+                @Override
+                public void onError(Exception e) {
+                    logger.debug("AmazonSnsProvider@Send : Exception Caught -" + e.getMessage());
+                    result.complete(SmsDeliveryResult.failed(PROVIDER, e.getMessage()));
+                }
 
-            return true;
+                @Override
+                public void onSuccess(PublishRequest request, PublishResult publishResult) {
+                    result.complete(SmsDeliveryResult.sent(PROVIDER));
+                }
+            });
         } catch (Exception e) {
             logger.debug("AmazonSnsProvider@Send : Exception Caught -" + e.getMessage());
-            return false;
+            result.complete(SmsDeliveryResult.failed(PROVIDER, e.getMessage()));
         }
+        return result;
     }
 
     @Override
     public void configure(Map<String, String> configurations) {
         this.configurations = configurations;
+
+        Map<String, MessageAttributeValue> attributes = new HashMap<String, MessageAttributeValue>();
+        attributes.put("AWS.SNS.SMS.SenderID", new MessageAttributeValue()
+                .withStringValue("HomeOffice")
+                .withDataType("String"));
+        this.smsAttributes = Collections.unmodifiableMap(attributes);
+
+        String clientToken = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_TOKEN);
+        String clientSecret = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SECRET);
+        String region = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_REGION,
+                SnsClientFactory.DEFAULT_REGION);
+
+        if (clientToken == null || clientSecret == null) {
+            logger.error("AmazonSnsProvider@configure : token or secret is missing");
+            return;
+        }
+        this.snsClient = SnsClientFactory.getSnsClient(clientToken, clientSecret, region);
     }
 }
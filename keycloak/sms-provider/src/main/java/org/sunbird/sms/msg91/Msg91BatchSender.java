@@ -0,0 +1,177 @@
+package org.sunbird.sms.msg91;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jboss.logging.Logger;
+import org.sunbird.utils.ThreadPoolUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges messages submitted within a short window, or handed over together, into a single Msg91
+ * v2 sendsms request.
+ *
+ * A batch is sent when the window elapses or when it reaches the maximum size, whichever comes
+ * first. Messages with the same text share one sms entry. The v2 API acknowledges a request as a
+ * whole, so every caller of a batch gets the outcome of that one request.
+ */
+class Msg91BatchSender {
+
+    private static Logger logger = Logger.getLogger(Msg91BatchSender.class);
+
+    private final CloseableHttpClient httpClient;
+    private final Msg91RequestEncoder encoder;
+    private final String url;
+    private final String authKey;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+    private List<PendingSms> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean closed;
+
+    Msg91BatchSender(CloseableHttpClient httpClient, Msg91RequestEncoder encoder, String url, String authKey,
+            long windowMillis, int maxBatchSize) {
+        this.httpClient = httpClient;
+        this.encoder = encoder;
+        this.url = url;
+        this.authKey = authKey;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Queues a message for the next batch. The returned future completes with true when the
+     * gateway accepted the batch holding it.
+     *
+     * @param mobileNumber mobile number without the leading +
+     * @param message message text, URL encoded by the encoder
+     */
+    CompletableFuture<Boolean> submit(String mobileNumber, String message) {
+        PendingSms sms = new PendingSms(mobileNumber, message);
+        List<PendingSms> full = null;
+        synchronized (lock) {
+            pending.add(sms);
+            if (closed || pending.size() >= maxBatchSize) {
+                full = pending;
+                pending = new ArrayList<>();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                ThreadPoolUtil.getScheduler().schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return sms.result;
+    }
+
+    /**
+     * Sends the given messages right away, in as few requests as the maximum batch size allows,
+     * without waiting for the window. Returns one future per message, in the same order.
+     */
+    List<CompletableFuture<Boolean>> sendNow(List<String> mobileNumbers, List<String> messages) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(mobileNumbers.size());
+        List<PendingSms> batch = new ArrayList<>();
+        for (int i = 0; i < mobileNumbers.size(); i++) {
+            PendingSms sms = new PendingSms(mobileNumbers.get(i), messages.get(i));
+            results.add(sms.result);
+            batch.add(sms);
+            if (batch.size() == maxBatchSize) {
+                dispatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+        return results;
+    }
+
+    /**
+     * Sends the pending batch right away; later submissions are no longer held for the window.
+     */
+    void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+    }
+
+    // Callers may be waiting for the batch on a worker thread, so it must not queue behind them
+    private void dispatch(List<PendingSms> batch) {
+        ThreadPoolUtil.getGatewayExecutor().execute(() -> send(batch));
+    }
+
+    private void flush() {
+        List<PendingSms> batch;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void send(List<PendingSms> batch) {
+        boolean sent = false;
+        try {
+            Map<String, List<String>> mobilesByMessage = new LinkedHashMap<>();
+            for (PendingSms sms : batch) {
+                mobilesByMessage.computeIfAbsent(sms.message, key -> new ArrayList<>()).add(sms.mobileNumber);
+            }
+            Msg91RequestEncoder.Buffer body = encoder.encodePost(mobilesByMessage);
+
+            HttpPost httpPost = new HttpPost(url);
+            httpPost.setHeader("content-type", "application/json");
+            httpPost.setHeader("authkey", authKey);
+            // The buffer is reused by this thread only once execute has returned
+            httpPost.setEntity(new ByteArrayEntity(body.array(), 0, body.length()));
+
+            long start = System.currentTimeMillis();
+            StatusLine sl;
+            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+                EntityUtils.consume(response.getEntity());
+                sl = response.getStatusLine();
+            }
+            sent = sl.getStatusCode() == 200;
+            if (sent) {
+                logger.debug("Msg91BatchSender - sent batch of " + batch.size() + " messages in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            } else {
+                logger.error("Msg91BatchSender - batch of " + batch.size() + " messages could not be sent: "
+                        + sl.getStatusCode() + " - " + sl.getReasonPhrase());
+            }
+        } catch (Exception e) {
+            logger.error("Msg91BatchSender - batch of " + batch.size() + " messages could not be sent", e);
+        } finally {
+            for (PendingSms sms : batch) {
+                sms.result.complete(sent);
+            }
+        }
+    }
+
+    private static class PendingSms {
+        private final String mobileNumber;
+        private final String message;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingSms(String mobileNumber, String message) {
+            this.mobileNumber = mobileNumber;
+            this.message = message;
+        }
+    }
+}
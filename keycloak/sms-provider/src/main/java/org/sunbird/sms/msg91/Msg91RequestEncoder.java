@@ -0,0 +1,270 @@
+package org.sunbird.sms.msg91;
+
+import org.sunbird.utils.JsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes Msg91 requests straight into reusable per-thread buffers.
+ *
+ * The parts that only depend on the provider configuration (sender, route, country, authkey) are
+ * encoded once, when the encoder is created; the JSON ones are produced by Gson itself so the
+ * output is byte for byte what JsonUtil.toJson gives for the same Sms and ProviderDetails. Message
+ * texts are URL encoded exactly like URLEncoder with UTF-8, as the gateway expects.
+ *
+ * A returned buffer is only valid until the next call on the same thread.
+ */
+class Msg91RequestEncoder {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    // Gson writes unicode escapes with lower case hex digits
+    private static final byte[] JSON_HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SMS_MESSAGE = "{\"message\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SMS_TO = "\",\"to\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SMS_END = "]}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAYLOAD_END = "]}".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int INITIAL_CAPACITY = 512;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+    private static final ThreadLocal<StringBuilder> URL_BUILDERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final byte[] payloadStart;
+    private final String getUrlStart;
+    private final String getUrlMiddle;
+
+    Msg91RequestEncoder(String getUrl, String sender, String route, String country, String authKey) {
+        // {"sender":..,"route":..,"country":..,"sms":[]} without the closing ]}
+        String payload = JsonUtil.toJson(new ProviderDetails(sender, route, country, Collections.<Sms>emptyList()));
+        this.payloadStart = payload.substring(0, payload.length() - PAYLOAD_END.length).getBytes(StandardCharsets.UTF_8);
+        this.getUrlStart = getUrl + "sender=" + sender + "&route=" + route + "&mobiles=";
+        this.getUrlMiddle = "&authkey=" + authKey + "&country=" + country + "&message=";
+    }
+
+    /**
+     * Body of a v2 sendsms request sending one message to one number.
+     */
+    Buffer encodePost(String mobileNumber, String smsText) {
+        Buffer buffer = acquire();
+        buffer.write(payloadStart);
+        writeSms(buffer, smsText, Collections.singletonList(mobileNumber));
+        buffer.write(PAYLOAD_END);
+        return buffer;
+    }
+
+    /**
+     * Body of a v2 sendsms request with one sms entry per distinct message text.
+     */
+    Buffer encodePost(Map<String, List<String>> mobilesByText) {
+        Buffer buffer = acquire();
+        buffer.write(payloadStart);
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : mobilesByText.entrySet()) {
+            if (!first) {
+                buffer.writeByte(',');
+            }
+            writeSms(buffer, entry.getKey(), entry.getValue());
+            first = false;
+        }
+        buffer.write(PAYLOAD_END);
+        return buffer;
+    }
+
+    /**
+     * URL of a sendhttp.php request.
+     */
+    String encodeGet(String mobileNumber, String smsText) {
+        StringBuilder url = URL_BUILDERS.get();
+        url.setLength(0);
+        url.append(getUrlStart).append(mobileNumber).append(getUrlMiddle);
+        for (int i = 0; i < smsText.length(); i++) {
+            char c = smsText.charAt(i);
+            if (isUnreserved(c)) {
+                url.append(c);
+            } else if (c == ' ') {
+                url.append('+');
+            } else {
+                int end = encodedRunEnd(smsText, i);
+                for (byte b : smsText.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    url.append('%').append((char) HEX[(b >> 4) & 0xF]).append((char) HEX[b & 0xF]);
+                }
+                i = end - 1;
+            }
+        }
+        String result = url.toString();
+        if (url.capacity() > MAX_RETAINED_CAPACITY) {
+            URL_BUILDERS.remove();
+        }
+        return result;
+    }
+
+    private static void writeSms(Buffer buffer, String smsText, List<String> mobileNumbers) {
+        buffer.write(SMS_MESSAGE);
+        // URL encoding leaves nothing that needs escaping in a JSON string
+        buffer.writeUrlEncoded(smsText);
+        buffer.write(SMS_TO);
+        for (int i = 0; i < mobileNumbers.size(); i++) {
+            if (i > 0) {
+                buffer.writeByte(',');
+            }
+            buffer.writeJsonString(mobileNumbers.get(i));
+        }
+        buffer.write(SMS_END);
+    }
+
+    private static Buffer acquire() {
+        Buffer buffer = BUFFERS.get();
+        if (buffer.bytes.length > MAX_RETAINED_CAPACITY) {
+            buffer = new Buffer();
+            BUFFERS.set(buffer);
+        }
+        buffer.length = 0;
+        return buffer;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    /**
+     * End of the run of characters starting at start that URLEncoder would percent encode
+     * together; encoding them as one string keeps surrogate pairs intact.
+     */
+    private static int encodedRunEnd(String s, int start) {
+        int end = start + 1;
+        while (end < s.length() && !isUnreserved(s.charAt(end)) && s.charAt(end) != ' ') {
+            end++;
+        }
+        return end;
+    }
+
+    static final class Buffer {
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int length;
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+
+        void write(byte[] data) {
+            ensureCapacity(data.length);
+            System.arraycopy(data, 0, bytes, length, data.length);
+            length += data.length;
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) b;
+        }
+
+        private void writeEscape(char c) {
+            ensureCapacity(6);
+            bytes[length++] = '\\';
+            bytes[length++] = 'u';
+            bytes[length++] = JSON_HEX[(c >> 12) & 0xF];
+            bytes[length++] = JSON_HEX[(c >> 8) & 0xF];
+            bytes[length++] = JSON_HEX[(c >> 4) & 0xF];
+            bytes[length++] = JSON_HEX[c & 0xF];
+        }
+
+        void writeUrlEncoded(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (isUnreserved(c)) {
+                    writeByte(c);
+                } else if (c == ' ') {
+                    writeByte('+');
+                } else {
+                    int end = encodedRunEnd(s, i);
+                    byte[] utf8 = s.substring(i, end).getBytes(StandardCharsets.UTF_8);
+                    ensureCapacity(utf8.length * 3);
+                    for (byte b : utf8) {
+                        bytes[length++] = '%';
+                        bytes[length++] = HEX[(b >> 4) & 0xF];
+                        bytes[length++] = HEX[b & 0xF];
+                    }
+                    i = end - 1;
+                }
+            }
+        }
+
+        /**
+         * Writes a quoted JSON string escaped the way Gson does by default, HTML characters
+         * included.
+         */
+        void writeJsonString(String s) {
+            writeByte('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        writeByte('\\');
+                        writeByte(c);
+                        break;
+                    case '\t':
+                        writeByte('\\');
+                        writeByte('t');
+                        break;
+                    case '\b':
+                        writeByte('\\');
+                        writeByte('b');
+                        break;
+                    case '\n':
+                        writeByte('\\');
+                        writeByte('n');
+                        break;
+                    case '\r':
+                        writeByte('\\');
+                        writeByte('r');
+                        break;
+                    case '\f':
+                        writeByte('\\');
+                        writeByte('f');
+                        break;
+                    case '<':
+                    case '>':
+                    case '&':
+                    case '=':
+                    case '\'':
+                    case '\u2028':
+                    case '\u2029':
+                        writeEscape(c);
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            writeEscape(c);
+                        } else if (c < 0x80) {
+                            writeByte(c);
+                        } else {
+                            int end = i + 1;
+                            while (end < s.length() && s.charAt(end) >= 0x80
+                                    && s.charAt(end) != '\u2028' && s.charAt(end) != '\u2029') {
+                                end++;
+                            }
+                            write(s.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                            i = end - 1;
+                        }
+                }
+            }
+            writeByte('"');
+        }
+    }
+}
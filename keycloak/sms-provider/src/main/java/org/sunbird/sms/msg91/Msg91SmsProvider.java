@@ -6,21 +6,30 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
 import org.jboss.logging.Logger;
 import org.sunbird.sms.SMSConfigurationUtil;
 import org.sunbird.sms.SmsConfigurationConstants;
+import org.sunbird.sms.SmsHttpClients;
 import org.sunbird.sms.provider.ISmsProvider;
-import org.sunbird.utils.JsonUtil;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+import org.sunbird.utils.ThreadPoolUtil;
 
 import javax.ws.rs.HttpMethod;
 import java.io.IOException;
-import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class Msg91SmsProvider implements ISmsProvider {
 
@@ -29,11 +38,54 @@ public class Msg91SmsProvider implements ISmsProvider {
     private static String GET_URL = "api/sendhttp.php?";
     private static String POST_URL = "api/v2/sendsms";
 
+    private static final String GATEWAY = "msg91";
+    private static final int DEFAULT_BATCH_MAX_SIZE = 100;
+    private static final long BATCH_WAIT_SECONDS = 30;
+
     private Map<String, String> configurations;
+    private CloseableHttpClient httpClient;
+    private Msg91RequestEncoder encoder;
+    private Msg91BatchSender batchSender;
+    private long batchWindowMillis;
 
     @Override
     public void configure(Map<String, String> configurations) {
         this.configurations = configurations;
+        this.httpClient = SmsHttpClients.getClient(GATEWAY, configurations);
+        this.encoder = new Msg91RequestEncoder(BASE_URL + GET_URL,
+                SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_SENDER),
+                SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_ROUTE),
+                SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_COUNTRY),
+                SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_AUTH_KEY));
+        this.batchWindowMillis = SMSConfigurationUtil.getConfigLong(configurations, SmsConfigurationConstants.CONF_SMS_BATCH_WINDOW, 0L);
+        this.batchSender = createBatchSender(configurations);
+    }
+
+    @Override
+    public void close() {
+        if (batchSender != null) {
+            batchSender.close();
+        }
+    }
+
+    /**
+     * The batch sender serves bulk sends with the POST method; single messages only go through it
+     * when a batch window is configured.
+     */
+    private Msg91BatchSender createBatchSender(Map<String, String> configurations) {
+        String httpMethod = SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_SMS_METHOD_TYPE);
+        if (!HttpMethod.POST.equals(httpMethod)) {
+            return null;
+        }
+        long windowMillis = Math.max(0L, batchWindowMillis);
+        int maxBatchSize = Math.max(1, SMSConfigurationUtil.getConfigInt(configurations, SmsConfigurationConstants.CONF_SMS_BATCH_MAX_SIZE, DEFAULT_BATCH_MAX_SIZE));
+        if (windowMillis > 0) {
+            logger.info("Msg91SmsProvider - batching messages every " + windowMillis + " ms, up to " + maxBatchSize + " per request");
+        }
+
+        return new Msg91BatchSender(httpClient, encoder, BASE_URL + POST_URL,
+                SMSConfigurationUtil.getConfigString(configurations, SmsConfigurationConstants.CONF_AUTH_KEY),
+                windowMillis, maxBatchSize);
     }
 
     @Override
@@ -41,6 +93,56 @@ public class Msg91SmsProvider implements ISmsProvider {
         return sendSms(phoneNumber, smsText);
     }
 
+    @Override
+    public CompletionStage<SmsDeliveryResult> sendAsync(SmsMessage message) {
+        if (batchWindowMillis > 0 && batchSender != null) {
+            return submitToBatch(message.getPhoneNumber(), message.getText()).thenApply(this::toResult);
+        }
+        // Gateway pool, so a worker waiting for the result never waits on a task queued behind it
+        return CompletableFuture.supplyAsync(() -> toResult(sendSms(message.getPhoneNumber(), message.getText())),
+                ThreadPoolUtil.getGatewayExecutor());
+    }
+
+    @Override
+    public List<CompletionStage<SmsDeliveryResult>> send(List<SmsMessage> messages) {
+        if (batchSender == null) {
+            return ISmsProvider.super.send(messages);
+        }
+
+        List<CompletionStage<SmsDeliveryResult>> results = new ArrayList<>(messages.size());
+        List<String> mobileNumbers = new ArrayList<>(messages.size());
+        List<String> texts = new ArrayList<>(messages.size());
+        try {
+            for (SmsMessage message : messages) {
+                mobileNumbers.add(removePlusFromMobileNumber(message.getPhoneNumber()));
+                texts.add(message.getText());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Msg91SmsProvider - could not prepare " + messages.size() + " messages", e);
+            for (int i = 0; i < messages.size(); i++) {
+                results.add(CompletableFuture.completedFuture(SmsDeliveryResult.failed(GATEWAY, e.getMessage())));
+            }
+            return results;
+        }
+
+        for (CompletableFuture<Boolean> sent : batchSender.sendNow(mobileNumbers, texts)) {
+            results.add(sent.thenApply(this::toResult));
+        }
+        return results;
+    }
+
+    private CompletableFuture<Boolean> submitToBatch(String mobileNumber, String smsText) {
+        if (StringUtils.isNullOrEmpty(mobileNumber) || StringUtils.isNullOrEmpty(smsText)) {
+            logger.debug("Msg91SmsProvider - Some mandatory parameters are empty!");
+            return CompletableFuture.completedFuture(false);
+        }
+        return batchSender.submit(removePlusFromMobileNumber(mobileNumber), smsText);
+    }
+
+    private SmsDeliveryResult toResult(boolean sent) {
+        return sent ? SmsDeliveryResult.sent(GATEWAY) : SmsDeliveryResult.failed(GATEWAY, "rejected by gateway");
+    }
+
     private boolean sendSms(String mobileNumber, String smsText) {
         // Send an SMS
         logger.debug("Msg91SmsProvider@Sending " + smsText + "  to mobileNumber " + mobileNumber);
@@ -61,12 +163,8 @@ public class Msg91SmsProvider implements ISmsProvider {
                 "smsRoute - " + smsRoute + "\n"
         );
 
-
-        CloseableHttpClient httpClient = null;
         try {
 
-            httpClient = HttpClients.createDefault();
-
             String path = null;
 
             if (!StringUtils.isNullOrEmpty(sender) && !StringUtils.isNullOrEmpty(smsRoute)
@@ -79,15 +177,13 @@ public class Msg91SmsProvider implements ISmsProvider {
 
                 if (httpMethod.equals(HttpMethod.GET)) {
                     logger.debug("Inside GET");
-                    path = getCompletePath(BASE_URL + GET_URL, sender, smsRoute, mobileNumber, authKey, country, URLEncoder.encode(smsText, "UTF-8"));
+                    path = encoder.encodeGet(mobileNumber, smsText);
 
                     logger.debug("Msg91SmsProvider -Executing request - " + path);
 
                     HttpGet httpGet = new HttpGet(path);
 
-                    CloseableHttpResponse response = httpClient.execute(httpGet);
-                    StatusLine sl = response.getStatusLine();
-                    response.close();
+                    StatusLine sl = execute(httpGet);
                     if (sl.getStatusCode() != 200) {
                         logger.error("SMS code for " + mobileNumber + " could not be sent: " + sl.getStatusCode() + " - " + sl.getReasonPhrase());
                     }
@@ -95,6 +191,10 @@ public class Msg91SmsProvider implements ISmsProvider {
                 } else if (httpMethod.equals(HttpMethod.POST)) {
                     logger.debug("Inside POST");
 
+                    if (batchWindowMillis > 0 && batchSender != null) {
+                        return sendBatched(mobileNumber, smsText);
+                    }
+
                     path = BASE_URL + POST_URL;
                     logger.debug("Msg91SmsProvider -Executing request - " + path);
 
@@ -106,36 +206,20 @@ public class Msg91SmsProvider implements ISmsProvider {
                     //add authkey header
                     httpPost.setHeader("authkey", authKey);
 
-                    List<String> mobileNumbers = new ArrayList<>();
-                    mobileNumbers.add(mobileNumber);
-
-                    //create sms
-                    Sms sms = new Sms(URLEncoder.encode(smsText, "UTF-8"), mobileNumbers);
-
-                    List<Sms> smsList = new ArrayList<>();
-                    smsList.add(sms);
-
-                    //create body
-                    ProviderDetails providerDetails = new ProviderDetails(sender, smsRoute, country, smsList);
-
-                    String providerDetailsString = JsonUtil.toJson(providerDetails);
-
-                    if (!StringUtils.isNullOrEmpty(providerDetailsString)) {
-                        logger.debug("Msg91SmsProvider - Body - " + providerDetailsString);
+                    //create body, the buffer is reused by this thread only once execute has returned
+                    Msg91RequestEncoder.Buffer body = encoder.encodePost(mobileNumber, smsText);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Msg91SmsProvider - Body - " + new String(body.array(), 0, body.length(), StandardCharsets.UTF_8));
+                    }
 
-                        HttpEntity entity = new ByteArrayEntity(providerDetailsString.getBytes("UTF-8"));
-                        httpPost.setEntity(entity);
+                    HttpEntity entity = new ByteArrayEntity(body.array(), 0, body.length());
+                    httpPost.setEntity(entity);
 
-                        CloseableHttpResponse response = httpClient.execute(httpPost);
-                        StatusLine sl = response.getStatusLine();
-                        response.close();
-                        if (sl.getStatusCode() != 200) {
-                            logger.error("SMS code for " + mobileNumber + " could not be sent: " + sl.getStatusCode() + " - " + sl.getReasonPhrase());
-                        }
-                        return sl.getStatusCode() == 200;
-                    } else {
-                        return false;
+                    StatusLine sl = execute(httpPost);
+                    if (sl.getStatusCode() != 200) {
+                        logger.error("SMS code for " + mobileNumber + " could not be sent: " + sl.getStatusCode() + " - " + sl.getReasonPhrase());
                     }
+                    return sl.getStatusCode() == 200;
                 }
 
             } else {
@@ -145,18 +229,32 @@ public class Msg91SmsProvider implements ISmsProvider {
         } catch (IOException e) {
             logger.error(e);
             return false;
-        } finally {
-            if (httpClient != null) {
-                try {
-                    httpClient.close();
-                } catch (IOException ignore) {
-                    // Ignore ...
-                }
-            }
         }
         return false;
     }
 
+    // Only reached by synchronous callers, the batch is flushed on the gateway pool so waiting here
+    // never holds up the flush. Asynchronous sends get the batch future without waiting.
+    private boolean sendBatched(String mobileNumber, String smsText) {
+        try {
+            return submitToBatch(mobileNumber, smsText).get(BATCH_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            logger.error("SMS code for " + mobileNumber + " could not be sent", e);
+            return false;
+        }
+    }
+
+    private StatusLine execute(HttpUriRequest request) throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            // Fully read the body so the connection goes back to the pool
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine();
+        }
+    }
+
     private String removePlusFromMobileNumber(String mobileNumber) {
         logger.debug("Msg91SmsProvider - removePlusFromMobileNumber " + mobileNumber);
 
@@ -166,15 +264,4 @@ public class Msg91SmsProvider implements ISmsProvider {
         return mobileNumber;
     }
 
-    private String getCompletePath(String gateWayUrl, String sender, String smsRoute, String mobileNumber, String authKey, String country, String smsText) {
-        String completeUrl = gateWayUrl
-                + "sender=" + sender
-                + "&route=" + smsRoute
-                + "&mobiles=" + mobileNumber
-                + "&authkey=" + authKey
-                + "&country=" + country
-                + "&message=" + smsText;
-        return completeUrl;
-    }
-
 }
@@ -1,10 +1,52 @@
 package org.sunbird.sms.provider;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public interface ISmsProvider {
 
+    long SEND_TIMEOUT_SECONDS = 30;
+
     void configure(Map<String, String> configurations);
 
-    boolean send(String phoneNumber, String smsText);
+    /**
+     * Sends a message without blocking the caller.
+     */
+    CompletionStage<SmsDeliveryResult> sendAsync(SmsMessage message);
+
+    /**
+     * Sends several messages, returning one result per message in the same order. Providers that
+     * can submit several messages in one gateway call override this.
+     */
+    default List<CompletionStage<SmsDeliveryResult>> send(List<SmsMessage> messages) {
+        List<CompletionStage<SmsDeliveryResult>> results = new ArrayList<>(messages.size());
+        for (SmsMessage message : messages) {
+            results.add(sendAsync(message));
+        }
+        return results;
+    }
+
+    /**
+     * Sends the messages the provider is still holding back and stops holding any back. Called
+     * once the provider was replaced; messages handed to it afterwards go out right away.
+     */
+    default void close() {
+    }
+
+    default boolean send(String phoneNumber, String smsText) {
+        try {
+            return sendAsync(new SmsMessage(phoneNumber, smsText)).toCompletableFuture()
+                    .get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS).isSent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package org.sunbird.sms.provider;
+
+/**
+ * Outcome of sending an {@link SmsMessage}: whether the provider accepted it, which provider
+ * handled it and, on failure, why.
+ */
+public class SmsDeliveryResult {
+
+    private final boolean sent;
+    private final String provider;
+    private final String error;
+
+    private SmsDeliveryResult(boolean sent, String provider, String error) {
+        this.sent = sent;
+        this.provider = provider;
+        this.error = error;
+    }
+
+    public static SmsDeliveryResult sent(String provider) {
+        return new SmsDeliveryResult(true, provider, null);
+    }
+
+    public static SmsDeliveryResult failed(String provider, String error) {
+        return new SmsDeliveryResult(false, provider, error);
+    }
+
+    public boolean isSent() {
+        return sent;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return sent ? "sent by " + provider : "not sent by " + provider + ": " + error;
+    }
+}
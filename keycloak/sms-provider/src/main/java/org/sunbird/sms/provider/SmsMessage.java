@@ -0,0 +1,23 @@
+package org.sunbird.sms.provider;
+
+/**
+ * A text message to a single phone number.
+ */
+public class SmsMessage {
+
+    private final String phoneNumber;
+    private final String text;
+
+    public SmsMessage(String phoneNumber, String text) {
+        this.phoneNumber = phoneNumber;
+        this.text = text;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
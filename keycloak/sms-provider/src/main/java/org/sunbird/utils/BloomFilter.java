@@ -0,0 +1,102 @@
+package org.sunbird.utils;
+
+/**
+ * Bloom filter over strings backed by a long[] bit set.
+ *
+ * The filter is sized from the expected number of entries and the wanted false positive rate.
+ * Entries are hashed once into 64 bits, and the bit positions are derived from two halves of that
+ * hash (Kirsch-Mitzenmacher), so a lookup costs one pass over the string and no allocation.
+ *
+ * Lookups may run concurrently with each other and with a single writer; a lookup that races
+ * with the put of the same value may miss it.
+ */
+public final class BloomFilter {
+
+  private static final double LN2 = Math.log(2);
+
+  private final long[] bits;
+  private final long numBits;
+  private final int numHashes;
+
+  private BloomFilter(long numBits, int numHashes) {
+    this.bits = new long[(int) ((numBits + 63) >>> 6)];
+    this.numBits = (long) bits.length << 6;
+    this.numHashes = numHashes;
+  }
+
+  /**
+   * Creates an empty filter.
+   *
+   * @param expectedEntries number of entries the filter is sized for
+   * @param falsePositiveRate probability that an absent entry is reported present once the
+   *        expected number of entries was added, between 0 and 1
+   */
+  public static BloomFilter create(long expectedEntries, double falsePositiveRate) {
+    if (expectedEntries < 1) {
+      throw new IllegalArgumentException("Expected entries must be positive: " + expectedEntries);
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException(
+          "False positive rate must be between 0 and 1: " + falsePositiveRate);
+    }
+    long numBits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (LN2 * LN2));
+    if (numBits > (long) Integer.MAX_VALUE << 6) {
+      throw new IllegalArgumentException("Filter for " + expectedEntries + " entries is too large");
+    }
+    int numHashes = (int) Math.max(1, Math.round((double) numBits / expectedEntries * LN2));
+    return new BloomFilter(numBits, numHashes);
+  }
+
+  public void put(CharSequence value) {
+    long hash = hash(value);
+    long hash1 = hash;
+    long hash2 = fmix64(hash ^ 0x9E3779B97F4A7C15L);
+    for (int i = 0; i < numHashes; i++) {
+      long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+      bits[(int) (index >>> 6)] |= 1L << index;
+    }
+  }
+
+  /**
+   * Returns false if the value was definitely never added, true if it probably was.
+   */
+  public boolean mightContain(CharSequence value) {
+    long hash = hash(value);
+    long hash1 = hash;
+    long hash2 = fmix64(hash ^ 0x9E3779B97F4A7C15L);
+    for (int i = 0; i < numHashes; i++) {
+      long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+      if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long bitSize() {
+    return numBits;
+  }
+
+  public int hashCount() {
+    return numHashes;
+  }
+
+  private static long hash(CharSequence value) {
+    long hash = 0xCBF29CE484222325L ^ value.length();
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0xFF51AFD7ED558CCDL;
+      hash ^= hash >>> 29;
+    }
+    return fmix64(hash);
+  }
+
+  // Finalization step of MurmurHash3, spreads every input bit over the whole word
+  private static long fmix64(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
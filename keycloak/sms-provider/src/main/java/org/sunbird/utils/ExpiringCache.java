@@ -0,0 +1,94 @@
+package org.sunbird.utils;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Small node local cache whose entries expire after a per entry time to live.
+ *
+ * Expired entries are dropped lazily on access, and all of them are swept whenever the cache
+ * reaches its maximum size. If it is still full after that, an arbitrary entry is evicted so the
+ * cache never grows past the bound.
+ */
+public class ExpiringCache<K, V> {
+
+  private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  public ExpiringCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.isExpired(System.currentTimeMillis())) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return entry.value;
+  }
+
+  public void put(K key, V value, long ttlMillis) {
+    makeRoom(key);
+    entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+  }
+
+  /**
+   * Atomically replaces the value of a key. The function gets the current value, or null if
+   * there is none or it expired, and returns the new value, or null to remove the key.
+   */
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function, long ttlMillis) {
+    makeRoom(key);
+    Entry<V> result = entries.compute(key, (k, entry) -> {
+      long now = System.currentTimeMillis();
+      V current = entry == null || entry.isExpired(now) ? null : entry.value;
+      V value = function.apply(k, current);
+      return value == null ? null : new Entry<>(value, now + ttlMillis);
+    });
+    return result == null ? null : result.value;
+  }
+
+  public void remove(K key) {
+    entries.remove(key);
+  }
+
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void makeRoom(K key) {
+    if (entries.size() < maxSize || entries.containsKey(key)) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(entry -> entry.isExpired(now));
+    Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+    while (entries.size() >= maxSize && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long expiresAt;
+
+    Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(long now) {
+      return now >= expiresAt;
+    }
+  }
+}
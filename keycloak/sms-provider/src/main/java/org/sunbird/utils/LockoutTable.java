@@ -0,0 +1,122 @@
+package org.sunbird.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded node local table of failure counters that can lock a key out, such as login or OTP
+ * failures per identifier.
+ *
+ * Keys that are locked out and keys that are not live in two maps ordered by last update, under
+ * one lock. Every update drops a few expired entries from the head of both maps, so sweeping is
+ * spread over the calls instead of scanning the table when it fills up. When the table is full the
+ * least recently updated key that is not locked out is evicted; locked out keys are only evicted
+ * once no other key is left, so a flood of new keys cannot push a lockout out.
+ *
+ * Times are passed in by the caller, in milliseconds of the same clock.
+ */
+public class LockoutTable<V> {
+
+  private static final int SWEEP_PER_UPDATE = 2;
+
+  private final int maxSize;
+  private final ToLongFunction<V> lockedUntil;
+  private final LinkedHashMap<String, Entry<V>> unlocked = new LinkedHashMap<>();
+  private final LinkedHashMap<String, Entry<V>> locked = new LinkedHashMap<>();
+
+  /**
+   * @param maxSize maximum number of keys kept
+   * @param lockedUntil returns the time until which a value locks its key out, 0 if it does not
+   */
+  public LockoutTable(int maxSize, ToLongFunction<V> lockedUntil) {
+    this.maxSize = Math.max(1, maxSize);
+    this.lockedUntil = lockedUntil;
+  }
+
+  /**
+   * Returns the value of the key, or null if there is none or it expired.
+   */
+  public synchronized V get(String key, long now) {
+    Entry<V> entry = locked.get(key);
+    if (entry == null) {
+      entry = unlocked.get(key);
+    }
+    return entry == null || entry.expiresAt <= now ? null : entry.value;
+  }
+
+  /**
+   * Replaces the value of the key with the result of the function, which gets the current value,
+   * or null if there is none or it expired. The value is kept for the time to live, and at least
+   * as long as it locks the key out; a null result removes the key.
+   */
+  public synchronized V update(String key, UnaryOperator<V> function, long now, long ttlMillis) {
+    Entry<V> current = take(key);
+    V value = function.apply(current == null || current.expiresAt <= now ? null : current.value);
+    sweep(now);
+    if (value == null) {
+      return null;
+    }
+    long until = lockedUntil.applyAsLong(value);
+    (until > now ? locked : unlocked).put(key,
+        new Entry<>(value, now + Math.max(ttlMillis, until - now)));
+    evict();
+    return value;
+  }
+
+  public synchronized void remove(String key) {
+    take(key);
+  }
+
+  public synchronized int size() {
+    return locked.size() + unlocked.size();
+  }
+
+  private Entry<V> take(String key) {
+    Entry<V> entry = locked.remove(key);
+    return entry != null ? entry : unlocked.remove(key);
+  }
+
+  // Drops expired entries from the head of both maps, and moves keys whose lockout ended
+  private void sweep(long now) {
+    Iterator<Map.Entry<String, Entry<V>>> iterator = locked.entrySet().iterator();
+    for (int i = 0; i < SWEEP_PER_UPDATE && iterator.hasNext(); i++) {
+      Map.Entry<String, Entry<V>> head = iterator.next();
+      if (lockedUntil.applyAsLong(head.getValue().value) > now) {
+        break;
+      }
+      iterator.remove();
+      if (head.getValue().expiresAt > now) {
+        unlocked.put(head.getKey(), head.getValue());
+      }
+    }
+    iterator = unlocked.entrySet().iterator();
+    for (int i = 0; i < SWEEP_PER_UPDATE && iterator.hasNext(); i++) {
+      if (iterator.next().getValue().expiresAt > now) {
+        break;
+      }
+      iterator.remove();
+    }
+  }
+
+  private void evict() {
+    while (locked.size() + unlocked.size() > maxSize) {
+      Map<String, Entry<V>> from = unlocked.isEmpty() ? locked : unlocked;
+      Iterator<String> oldest = from.keySet().iterator();
+      oldest.next();
+      oldest.remove();
+    }
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long expiresAt;
+
+    Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
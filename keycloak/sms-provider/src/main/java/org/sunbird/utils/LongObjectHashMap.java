@@ -0,0 +1,132 @@
+package org.sunbird.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to objects, using open addressing with linear probing so no
+ * key is boxed and no entry object is allocated.
+ *
+ * The table is kept at most half full and removals shift the following entries back instead of
+ * leaving tombstones, so lookups stay short. Not thread safe, callers synchronize.
+ */
+public class LongObjectHashMap<V> {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private Object[] values;
+  private int mask;
+  private int size;
+
+  public LongObjectHashMap() {
+    this(MIN_CAPACITY);
+  }
+
+  public LongObjectHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+    allocate(capacity);
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return (V) values[slot];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Associates the value with the key and returns the previous value, or null if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values are not supported");
+    }
+    int slot = slot(key);
+    for (; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+      }
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size * 2 > values.length) {
+      rehash(values.length * 2);
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    int slot = slot(key);
+    for (; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        shiftBack(slot);
+        size--;
+        return previous;
+      }
+    }
+    return null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  // Moves entries following the freed slot back so every entry stays reachable from its home slot
+  private void shiftBack(int free) {
+    int slot = free;
+    while (true) {
+      slot = (slot + 1) & mask;
+      if (values[slot] == null) {
+        values[free] = null;
+        return;
+      }
+      int home = slot(keys[slot]);
+      // The entry can move to the free slot only if its home is not between the two slots
+      if (((slot - home) & mask) >= ((slot - free) & mask)) {
+        keys[free] = keys[slot];
+        values[free] = values[slot];
+        free = slot;
+      }
+    }
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = slot(oldKeys[i]);
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  private int slot(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
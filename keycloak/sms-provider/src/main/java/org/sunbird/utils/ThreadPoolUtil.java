@@ -0,0 +1,167 @@
+package org.sunbird.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+
+/**
+ * Shared daemon thread pools used by the SPI for work that must not hold a Keycloak request
+ * thread (gateway calls, notification calls, background refreshes).
+ *
+ * Tasks submitted here must not touch the KeycloakSession of the calling request, it is not
+ * thread safe. Read whatever is needed from the session before submitting.
+ *
+ * Gateway requests that other tasks wait for run on their own pool, whose tasks never wait for
+ * anything but the network. A task on the worker pool may block on a gateway task, but never on
+ * another worker task, which could be stuck in the queue behind it.
+ *
+ * Email notifications are posted on a small pool of their own, so a slow notification service
+ * never holds the threads that SMS deliveries need.
+ *
+ * Long running bulk jobs run on a small pool of their own, so they cannot take the worker threads
+ * that logins wait for. Its queue is bounded; once it is full the submitting thread runs the task
+ * itself, which slows a bulk caller down instead of queueing without limit.
+ */
+public class ThreadPoolUtil {
+
+  private static Logger logger = Logger.getLogger(ThreadPoolUtil.class);
+
+  public static final String WORKER_POOL_SIZE = "sunbird_auth_worker_pool_size";
+  private static final int DEFAULT_WORKER_POOL_SIZE = 32;
+  public static final String GATEWAY_POOL_SIZE = "sunbird_auth_gateway_pool_size";
+  private static final int DEFAULT_GATEWAY_POOL_SIZE = 32;
+  public static final String NOTIFICATION_POOL_SIZE = "sunbird_auth_notification_pool_size";
+  private static final int DEFAULT_NOTIFICATION_POOL_SIZE = 4;
+  public static final String BULK_POOL_SIZE = "sunbird_auth_bulk_pool_size";
+  private static final int DEFAULT_BULK_POOL_SIZE = 4;
+  private static final int BULK_QUEUE_CAPACITY = 64;
+
+  private ThreadPoolUtil() {}
+
+  public static ExecutorService getExecutor() {
+    return ExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Runs the task on the worker pool only if a worker is free to take it right away, for
+   * optional work that must not queue up behind, or ahead of, anything else. Returns false if the
+   * task was dropped.
+   */
+  public static boolean executeIfIdle(Runnable task) {
+    ThreadPoolExecutor executor = ExecutorHolder.EXECUTOR;
+    if (!executor.getQueue().isEmpty()
+        || executor.getActiveCount() >= executor.getMaximumPoolSize()) {
+      return false;
+    }
+    executor.execute(task);
+    return true;
+  }
+
+  /**
+   * Pool for SMS gateway requests, see the class description.
+   */
+  public static ExecutorService getGatewayExecutor() {
+    return GatewayExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Pool for email notification requests, see the class description.
+   */
+  public static ExecutorService getNotificationExecutor() {
+    return NotificationExecutorHolder.EXECUTOR;
+  }
+
+  /**
+   * Bounded pool for bulk jobs, see the class description.
+   */
+  public static ExecutorService getBulkExecutor() {
+    return BulkExecutorHolder.EXECUTOR;
+  }
+
+  public static ScheduledExecutorService getScheduler() {
+    return SchedulerHolder.SCHEDULER;
+  }
+
+  private static class ExecutorHolder {
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor("sunbird-auth-worker",
+        getPoolSize(WORKER_POOL_SIZE, DEFAULT_WORKER_POOL_SIZE));
+  }
+
+  private static class GatewayExecutorHolder {
+    private static final ExecutorService EXECUTOR = createExecutor("sunbird-auth-gateway",
+        getPoolSize(GATEWAY_POOL_SIZE, DEFAULT_GATEWAY_POOL_SIZE));
+  }
+
+  private static class NotificationExecutorHolder {
+    private static final ExecutorService EXECUTOR = createExecutor("sunbird-auth-notification",
+        getPoolSize(NOTIFICATION_POOL_SIZE, DEFAULT_NOTIFICATION_POOL_SIZE));
+  }
+
+  private static class BulkExecutorHolder {
+    private static final ExecutorService EXECUTOR = createExecutor("sunbird-auth-bulk",
+        getPoolSize(BULK_POOL_SIZE, DEFAULT_BULK_POOL_SIZE),
+        new LinkedBlockingQueue<>(BULK_QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  private static ThreadPoolExecutor createExecutor(String name, int poolSize) {
+    return createExecutor(name, poolSize, new LinkedBlockingQueue<>(),
+        new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  private static ThreadPoolExecutor createExecutor(String name, int poolSize,
+      BlockingQueue<Runnable> queue, RejectedExecutionHandler rejectedHandler) {
+    logger.info("ThreadPoolUtil: creating " + name + " pool of size " + poolSize);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L,
+        TimeUnit.SECONDS, queue, new DaemonThreadFactory(name), rejectedHandler);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static class SchedulerHolder {
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private static ScheduledExecutorService createScheduler() {
+      ScheduledThreadPoolExecutor scheduler =
+          new ScheduledThreadPoolExecutor(2, new DaemonThreadFactory("sunbird-auth-scheduler"));
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+    }
+  }
+
+  private static int getPoolSize(String name, int defaultSize) {
+    String poolSize = System.getenv(name);
+    if (StringUtils.isNotBlank(poolSize)) {
+      try {
+        return Math.max(1, Integer.parseInt(poolSize.trim()));
+      } catch (NumberFormatException e) {
+        logger.error("ThreadPoolUtil: invalid value " + poolSize + " for " + name);
+      }
+    }
+    return defaultSize;
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -433,4 +433,35 @@ public class RequiredActionLinkProviderTest {
           ((ErrorRepresentation) (expectedException.getResponse().getEntity())).getErrorMessage());
     }
   }
+
+  @Test
+  public void bulkRequestsMandatoryCheck() throws Exception {
+    String clientId = "master";
+    Map<String, Object> bulkRequest = new HashMap<>();
+    bulkRequest.put(Constants.CLIENT_ID, clientId);
+    PowerMockito.whenNew(AppAuthManager.class).withAnyArguments().thenReturn(authMangr);
+    PowerMockito.when(authMangr.authenticateBearerToken(session, model)).thenReturn(authResult);
+    AccessToken accessToken = PowerMockito.mock(AccessToken.class);
+    PowerMockito.when(authResult.getToken()).thenReturn(accessToken);
+    Access access = PowerMockito.mock(Access.class);
+    PowerMockito.when(accessToken.getRealmAccess()).thenReturn(access);
+    PowerMockito.when(access.isUserInRole(Constants.ADMIN)).thenReturn(true);
+    PowerMockito.when(authResult.getToken().getRealmAccess().isUserInRole(Mockito.anyString()))
+        .thenReturn(true);
+    PowerMockito.when(model.getClientByClientId(clientId)).thenReturn(client);
+    PowerMockito.when(client.isEnabled()).thenReturn(true);
+
+    RequiredActionLinkProvider provider = new RequiredActionLinkProvider(session);
+    WebApplicationException expectedException = new WebApplicationException(
+        ErrorResponse.error(MessageFormat.format(Constants.ERROR_MANDATORY_PARAM_MISSING,
+            Constants.REQUESTS), Status.BAD_REQUEST));
+    try {
+      Response response = provider.generateRequiredActionLinks(bulkRequest);
+      assertTrue(response == null);
+    } catch (WebApplicationException ex) {
+      assertEquals(ex.getResponse().getStatus(), expectedException.getResponse().getStatus());
+      assertEquals(((ErrorRepresentation) (ex.getResponse().getEntity())).getErrorMessage(),
+          ((ErrorRepresentation) (expectedException.getResponse().getEntity())).getErrorMessage());
+    }
+  }
 }
@@ -0,0 +1,166 @@
+package org.sunbird.keycloak.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.crypto.SignatureSignerContext;
+import org.keycloak.models.KeycloakContext;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakTransactionManager;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RealmProvider;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.UserProvider;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.sunbird.keycloak.utils.Constants;
+
+public class RequiredActionLinkStreamTest {
+
+  private static final String REALM_ID = "sunbird";
+  private static final String LINK_PREFIX = "https://sunbird.org/action-token?key=";
+  private static final int ENTRY_COUNT = 250;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private KeycloakSessionFactory sessionFactory;
+  private KeycloakSession session;
+  private RealmProvider realms;
+  private UserProvider users;
+  private RealmModel realm;
+  private SignatureSignerContext signer;
+
+  @Before
+  public void setUp() throws Exception {
+    sessionFactory = Mockito.mock(KeycloakSessionFactory.class);
+    session = Mockito.mock(KeycloakSession.class);
+    realms = Mockito.mock(RealmProvider.class);
+    users = Mockito.mock(UserProvider.class);
+    realm = Mockito.mock(RealmModel.class);
+    signer = Mockito.mock(SignatureSignerContext.class);
+
+    Mockito.when(sessionFactory.create()).thenReturn(session);
+    Mockito.when(session.getTransactionManager())
+        .thenReturn(Mockito.mock(KeycloakTransactionManager.class));
+    Mockito.when(session.getContext()).thenReturn(Mockito.mock(KeycloakContext.class));
+    Mockito.when(session.realms()).thenReturn(realms);
+    Mockito.when(session.users()).thenReturn(users);
+    Mockito.when(realms.getRealm(REALM_ID)).thenReturn(realm);
+
+    Mockito.when(signer.getAlgorithm()).thenReturn("RS256");
+    Mockito.when(signer.getKid()).thenReturn("kid");
+    Mockito.when(signer.sign(Matchers.any(byte[].class))).thenReturn(new byte[] {1, 2, 3});
+  }
+
+  private void addUser(String userName, boolean enabled) {
+    UserModel user = Mockito.mock(UserModel.class);
+    Mockito.when(user.getId()).thenReturn("id-" + userName);
+    Mockito.when(user.isEnabled()).thenReturn(enabled);
+    Mockito.when(users.getUserByUsername(userName, realm)).thenReturn(user);
+  }
+
+  private List<Map<String, Object>> write(List<RequiredActionLinkStream.Entry> entries)
+      throws Exception {
+    RequiredActionLinkStream stream = new RequiredActionLinkStream(sessionFactory, REALM_ID,
+        "portal", Integer.MAX_VALUE, "https://sunbird.org/auth/realms/sunbird", signer,
+        LINK_PREFIX, entries);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    stream.write(out);
+
+    String body = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(body.endsWith("\n"));
+    List<Map<String, Object>> lines = new ArrayList<>();
+    for (String line : body.split("\n")) {
+      lines.add(mapper.readValue(line, Map.class));
+    }
+    return lines;
+  }
+
+  private static RequiredActionLinkStream.Entry entry(String userName, String error) {
+    return new RequiredActionLinkStream.Entry(userName, "/resources",
+        Collections.singletonList("UPDATE_PASSWORD"), error);
+  }
+
+  @Test
+  public void writesOneLinePerEntryInRequestOrderAcrossChunks() throws Exception {
+    List<RequiredActionLinkStream.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      addUser("user" + i, true);
+      entries.add(entry("user" + i, null));
+    }
+
+    List<Map<String, Object>> lines = write(entries);
+
+    assertEquals(ENTRY_COUNT, lines.size());
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      Map<String, Object> line = lines.get(i);
+      assertEquals("user" + i, line.get(Constants.USERNAME));
+      assertFalse(line.containsKey(Constants.ERROR));
+      String link = (String) line.get(Constants.LINK);
+      assertTrue(link.startsWith(LINK_PREFIX));
+      assertEquals(3, link.substring(LINK_PREFIX.length()).split("\\.").length);
+    }
+    // Chunks of 100 users, each in a session of its own
+    Mockito.verify(sessionFactory, Mockito.times(3)).create();
+    Mockito.verify(session, Mockito.times(3)).close();
+  }
+
+  @Test
+  public void reportsErrorsPerEntry() throws Exception {
+    addUser("amit", true);
+    addUser("disabled", false);
+    String badRedirect = MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE,
+        "https://evil.com", Constants.REDIRECT_URI);
+    String badAction = MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE, "FLY",
+        Constants.REQUIRED_ACTION);
+    List<RequiredActionLinkStream.Entry> entries = new ArrayList<>();
+    entries.add(entry("unknown", null));
+    entries.add(entry("amit", badRedirect));
+    entries.add(entry("amit", null));
+    entries.add(entry("amit", badAction));
+    entries.add(entry("disabled", null));
+
+    List<Map<String, Object>> lines = write(entries);
+
+    assertEquals(5, lines.size());
+    assertEquals(MessageFormat.format(Constants.ERROR_INVALID_PARAMETER_VALUE, "unknown",
+        Constants.USERNAME), lines.get(0).get(Constants.ERROR));
+    assertEquals(badRedirect, lines.get(1).get(Constants.ERROR));
+    assertTrue(lines.get(2).containsKey(Constants.LINK));
+    assertEquals(badAction, lines.get(3).get(Constants.ERROR));
+    assertEquals(Constants.ERROR_USER_IS_DISABLED, lines.get(4).get(Constants.ERROR));
+    for (int i = 0; i < entries.size(); i++) {
+      assertEquals(i == 0 ? "unknown" : i == 4 ? "disabled" : "amit",
+          lines.get(i).get(Constants.USERNAME));
+    }
+  }
+
+  @Test
+  public void reportsEveryEntryOfAFailedChunk() throws Exception {
+    Mockito.when(realms.getRealm(REALM_ID)).thenThrow(new IllegalStateException("db down"));
+    List<RequiredActionLinkStream.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      entries.add(entry("user" + i, null));
+    }
+
+    List<Map<String, Object>> lines = write(entries);
+
+    assertEquals(3, lines.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("user" + i, lines.get(i).get(Constants.USERNAME));
+      assertEquals(Constants.ERROR_CREATE_LINK, lines.get(i).get(Constants.ERROR));
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.sunbird.keycloak.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.sunbird.keycloak.utils.PhoneNumberNormalizer.PhoneNumber;
+
+public class PhoneNumberNormalizerTest {
+
+  @Test
+  public void nationalFormsOfTheSameNumberAreEqual() {
+    String[] forms = {"9876543210", "09876543210", "+919876543210", "919876543210",
+        "00919876543210", "+91 98765-43210", "(987) 654-3210", "987.654.3210"};
+    for (String form : forms) {
+      PhoneNumber number = PhoneNumberNormalizer.normalize(form, 91);
+      assertEquals(form, 919876543210L, number.getE164());
+      assertEquals(form, 91, number.getCountryCode());
+      assertEquals(form, 9876543210L, number.getNationalNumber());
+      assertEquals(form, "+919876543210", number.toString());
+    }
+  }
+
+  @Test
+  public void internationalNumbersKeepTheirCountryCode() {
+    PhoneNumber us = PhoneNumberNormalizer.normalize("+1 415 555 0123", 91);
+    assertEquals(1, us.getCountryCode());
+    assertEquals(4155550123L, us.getNationalNumber());
+
+    PhoneNumber kenya = PhoneNumberNormalizer.normalize("+254 712 345678", 91);
+    assertEquals(254, kenya.getCountryCode());
+    assertEquals(712345678L, kenya.getNationalNumber());
+
+    PhoneNumber uk = PhoneNumberNormalizer.normalize("+44 (0)20 7946 0018", 91);
+    assertEquals(44, uk.getCountryCode());
+    assertEquals(442079460018L, uk.getE164());
+  }
+
+  @Test
+  public void defaultCountryApplies() {
+    PhoneNumber kenya = PhoneNumberNormalizer.normalize("0712345678", 254);
+    assertEquals(254712345678L, kenya.getE164());
+    assertEquals(254, PhoneNumberNormalizer.normalize("254712345678", 254).getCountryCode());
+  }
+
+  @Test
+  public void storedPhonesUseTheirOwnCountryCode() {
+    PhoneNumber us = PhoneNumberNormalizer.normalizeStored("4155550123", "+1");
+    assertEquals(14155550123L, us.getE164());
+    assertEquals(PhoneNumberNormalizer.normalize("+1 415 555 0123", 91), us);
+    int defaultCode = PhoneNumberNormalizer.getDefaultCountryCode();
+    assertEquals(defaultCode,
+        PhoneNumberNormalizer.normalizeStored("9876543210", null).getCountryCode());
+    assertEquals(defaultCode,
+        PhoneNumberNormalizer.normalizeStored("9876543210", "IN").getCountryCode());
+  }
+
+  @Test
+  public void invalidInputIsRejected() {
+    assertNull(PhoneNumberNormalizer.normalize(null, 91));
+    assertNull(PhoneNumberNormalizer.normalize("", 91));
+    assertNull(PhoneNumberNormalizer.normalize("amit@gmail.com", 91));
+    assertNull(PhoneNumberNormalizer.normalize("98765+43210", 91));
+    assertNull(PhoneNumberNormalizer.normalize("123", 91));
+    assertNull(PhoneNumberNormalizer.normalize("0000000", 91));
+    assertNull(PhoneNumberNormalizer.normalize("+1234567890123456", 91));
+    assertNull(PhoneNumberNormalizer.normalize("1234567890123456789", 91));
+  }
+
+  @Test
+  public void countryCodesAreParsed() {
+    assertEquals(91, PhoneNumberNormalizer.parseCountryCode("+91"));
+    assertEquals(254, PhoneNumberNormalizer.parseCountryCode(" 254 "));
+    assertEquals(-1, PhoneNumberNormalizer.parseCountryCode("+"));
+    assertEquals(-1, PhoneNumberNormalizer.parseCountryCode("1234"));
+    assertEquals(-1, PhoneNumberNormalizer.parseCountryCode("IN"));
+  }
+}
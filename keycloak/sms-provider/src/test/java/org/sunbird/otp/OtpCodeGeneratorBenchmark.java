@@ -0,0 +1,51 @@
+package org.sunbird.otp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of OTP generation, compared with the previous new Random() / nextFloat() approach.
+ *
+ * Run with: mvn test-compile && java -cp target/test-classes:target/classes:$(mvn -q
+ * dependency:build-classpath -Dmdep.outputFile=/dev/stdout) org.openjdk.jmh.Main
+ * OtpCodeGeneratorBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class OtpCodeGeneratorBenchmark {
+
+    private final OtpCodeGenerator numeric = new NumericCodeGenerator();
+
+    @Benchmark
+    public String legacyRandomFloat() {
+        double maxValue = Math.pow(10.0, 8);
+        Random r = new Random();
+        long code = (long) (r.nextFloat() * maxValue);
+        return Long.toString(code);
+    }
+
+    @Benchmark
+    public String secureRandomNumeric() {
+        return numeric.generate(8);
+    }
+
+    @Benchmark
+    public String secureRandomAlphanumeric() {
+        return OtpCodeGenerators.generate(OtpCodeType.ALPHANUMERIC, 8);
+    }
+}
@@ -0,0 +1,58 @@
+package org.sunbird.otp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OtpCodeGeneratorTest {
+
+    @Test
+    public void numericCodeHasExactLengthAndNoLeadingZero() {
+        for (int i = 0; i < 1000; i++) {
+            String code = OtpCodeGenerators.generate(OtpCodeType.NUMERIC, 8);
+            assertEquals(8, code.length());
+            assertTrue(code.matches("[1-9][0-9]{7}"));
+        }
+    }
+
+    @Test
+    public void zeroPaddedCodeHasExactLength() {
+        boolean leadingZeroSeen = false;
+        for (int i = 0; i < 1000; i++) {
+            String code = OtpCodeGenerators.generate(OtpCodeType.ZERO_PADDED_NUMERIC, 4);
+            assertEquals(4, code.length());
+            assertTrue(code.matches("[0-9]{4}"));
+            leadingZeroSeen |= code.charAt(0) == '0';
+        }
+        assertTrue(leadingZeroSeen);
+    }
+
+    @Test
+    public void alphanumericCodeUsesUnambiguousAlphabet() {
+        for (int i = 0; i < 1000; i++) {
+            String code = OtpCodeGenerators.generate(OtpCodeType.ALPHANUMERIC, 6);
+            assertEquals(6, code.length());
+            assertTrue(code.matches("[2-9A-HJ-NP-Z]{6}"));
+        }
+    }
+
+    @Test
+    public void successiveCodesDiffer() {
+        assertNotEquals(OtpCodeGenerators.generate(OtpCodeType.NUMERIC, 8),
+                OtpCodeGenerators.generate(OtpCodeType.NUMERIC, 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroLengthIsRejected() {
+        OtpCodeGenerators.generate(OtpCodeType.NUMERIC, 0);
+    }
+
+    @Test
+    public void configValueFallsBackToDefault() {
+        assertEquals(OtpCodeType.ALPHANUMERIC, OtpCodeType.fromConfig("alphanumeric", OtpCodeType.NUMERIC));
+        assertEquals(OtpCodeType.NUMERIC, OtpCodeType.fromConfig("unknown", OtpCodeType.NUMERIC));
+        assertEquals(OtpCodeType.NUMERIC, OtpCodeType.fromConfig(null, OtpCodeType.NUMERIC));
+    }
+}
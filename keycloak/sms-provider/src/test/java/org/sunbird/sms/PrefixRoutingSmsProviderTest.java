@@ -0,0 +1,96 @@
+package org.sunbird.sms;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import org.junit.Test;
+import org.sunbird.sms.provider.ISmsProvider;
+import org.sunbird.sms.provider.SmsDeliveryResult;
+import org.sunbird.sms.provider.SmsMessage;
+
+public class PrefixRoutingSmsProviderTest {
+
+  private final ISmsProvider defaultProvider = new NamedProvider();
+  private final ISmsProvider india = new NamedProvider();
+  private final ISmsProvider northAmerica = new NamedProvider();
+  private final ISmsProvider sanFrancisco = new NamedProvider();
+  private final ISmsProvider kenya = new NamedProvider();
+
+  private PrefixRoutingSmsProvider createRouting() {
+    PrefixRoutingSmsProvider routing = new PrefixRoutingSmsProvider(defaultProvider);
+    routing.addRoute("+91", india);
+    routing.addRoute("+1", northAmerica);
+    routing.addRoute("+1415", sanFrancisco);
+    routing.addRoute("+254", kenya);
+    return routing;
+  }
+
+  @Test
+  public void routesByLongestMatchingPrefix() {
+    PrefixRoutingSmsProvider routing = createRouting();
+    assertSame(india, routing.route("+919876543210"));
+    assertSame(sanFrancisco, routing.route("+14155550000"));
+    assertSame(northAmerica, routing.route("+12125550000"));
+    assertSame(kenya, routing.route("+254700000000"));
+  }
+
+  @Test
+  public void fallsBackToDefaultProvider() {
+    PrefixRoutingSmsProvider routing = createRouting();
+    assertSame(defaultProvider, routing.route("+442071234567"));
+    assertSame(defaultProvider, routing.route("+25"));
+  }
+
+  @Test
+  public void sendsNationalNumbersToDefaultProvider() {
+    PrefixRoutingSmsProvider routing = createRouting();
+    routing.addRoute("+98", new NamedProvider());
+    routing.addRoute("+7", new NamedProvider());
+    assertSame(defaultProvider, routing.route("9876543210"));
+    assertSame(defaultProvider, routing.route("7012345678"));
+    assertSame(defaultProvider, routing.route(""));
+  }
+
+  @Test
+  public void ignoresSeparators() {
+    assertSame(sanFrancisco, createRouting().route("+1 (415) 555-0000"));
+  }
+
+  @Test
+  public void validatesPrefixes() {
+    assertTrue(PrefixRoutingSmsProvider.isValidPrefix("+91"));
+    assertFalse(PrefixRoutingSmsProvider.isValidPrefix("91"));
+    assertFalse(PrefixRoutingSmsProvider.isValidPrefix("+"));
+    assertFalse(PrefixRoutingSmsProvider.isValidPrefix("+9a"));
+  }
+
+  @Test
+  public void closesDefaultProviderAndEveryRoute() {
+    createRouting().close();
+    for (ISmsProvider provider : new ISmsProvider[] {defaultProvider, india, northAmerica,
+        sanFrancisco, kenya}) {
+      assertTrue(((NamedProvider) provider).closed);
+    }
+  }
+
+  private static class NamedProvider implements ISmsProvider {
+    private boolean closed;
+
+    @Override
+    public void configure(Map<String, String> configurations) {}
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public CompletionStage<SmsDeliveryResult> sendAsync(SmsMessage message) {
+      return CompletableFuture.completedFuture(SmsDeliveryResult.sent("test"));
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package org.sunbird.sms.msg91;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sunbird.utils.JsonUtil;
+
+/**
+ * Cost of encoding a Msg91 request, compared with the previous Sms / ProviderDetails / Gson and
+ * URLEncoder concatenation paths. Run with -prof gc to compare allocation rates.
+ *
+ * Run with: mvn test-compile && java -cp target/test-classes:target/classes:$(mvn -q
+ * dependency:build-classpath -Dmdep.outputFile=/dev/stdout) org.openjdk.jmh.Main
+ * Msg91RequestEncoderBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class Msg91RequestEncoderBenchmark {
+
+  private static final String GET_URL = "http://api.msg91.com/api/sendhttp.php?";
+  private static final String MOBILE = "919876543210";
+  private static final String TEXT = "Your OTP to verify your phone number is 48213657. It is valid for 10 minutes.";
+
+  private final Msg91RequestEncoder encoder = new Msg91RequestEncoder(GET_URL, "SUNBRD", "4", "91", "authkey");
+
+  @Benchmark
+  public byte[] legacyPost() throws UnsupportedEncodingException {
+    List<String> mobileNumbers = new ArrayList<>();
+    mobileNumbers.add(MOBILE);
+    Sms sms = new Sms(URLEncoder.encode(TEXT, "UTF-8"), mobileNumbers);
+    List<Sms> smsList = new ArrayList<>();
+    smsList.add(sms);
+    ProviderDetails providerDetails = new ProviderDetails("SUNBRD", "4", "91", smsList);
+    return JsonUtil.toJson(providerDetails).getBytes("UTF-8");
+  }
+
+  @Benchmark
+  public int encoderPost() {
+    return encoder.encodePost(MOBILE, TEXT).length();
+  }
+
+  @Benchmark
+  public String legacyGet() throws UnsupportedEncodingException {
+    return GET_URL + "sender=" + "SUNBRD" + "&route=" + "4" + "&mobiles=" + MOBILE + "&authkey=" + "authkey"
+        + "&country=" + "91" + "&message=" + URLEncoder.encode(TEXT, "UTF-8");
+  }
+
+  @Benchmark
+  public String encoderGet() {
+    return encoder.encodeGet(MOBILE, TEXT);
+  }
+}
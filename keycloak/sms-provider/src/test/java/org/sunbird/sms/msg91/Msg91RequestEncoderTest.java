@@ -0,0 +1,70 @@
+package org.sunbird.sms.msg91;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.sunbird.utils.JsonUtil;
+
+public class Msg91RequestEncoderTest {
+
+  private static final String GET_URL = "http://api.msg91.com/api/sendhttp.php?";
+
+  private static final String[] TEXTS = {
+    "Your OTP is 123456",
+    "OTP: 4821 & valid for 10 min. Don't share <it>!",
+    "\u0906\u092A\u0915\u093E \u0913\u091F\u0940\u092A\u0940 123456 \u0939\u0948",
+    "Emoji \uD83D\uDE00 and a lone surrogate \uD800 end",
+    "Line\nbreak\ttab \"quoted\" back\\slash = ~!@#$%^*()"
+  };
+
+  private static String toString(Msg91RequestEncoder.Buffer buffer) {
+    return new String(buffer.array(), 0, buffer.length(), StandardCharsets.UTF_8);
+  }
+
+  private static String gsonBody(String sender, String route, String country, Map<String, List<String>> mobilesByText)
+      throws Exception {
+    List<Sms> smsList = new ArrayList<>();
+    for (Map.Entry<String, List<String>> entry : mobilesByText.entrySet()) {
+      smsList.add(new Sms(URLEncoder.encode(entry.getKey(), "UTF-8"), entry.getValue()));
+    }
+    return JsonUtil.toJson(new ProviderDetails(sender, route, country, smsList));
+  }
+
+  @Test
+  public void singlePostMatchesGson() throws Exception {
+    Msg91RequestEncoder encoder = new Msg91RequestEncoder(GET_URL, "SUNBRD", "4", "91", "key");
+    for (String text : TEXTS) {
+      String expected =
+          gsonBody("SUNBRD", "4", "91", Collections.singletonMap(text, Collections.singletonList("919876543210")));
+      assertEquals(expected, toString(encoder.encodePost("919876543210", text)));
+    }
+  }
+
+  @Test
+  public void batchPostMatchesGson() throws Exception {
+    Msg91RequestEncoder encoder = new Msg91RequestEncoder(GET_URL, "S<&>'=\"", "4", null, "key");
+    Map<String, List<String>> mobilesByText = new LinkedHashMap<>();
+    mobilesByText.put(TEXTS[0], Arrays.asList("919876543210", "919876543211"));
+    mobilesByText.put(TEXTS[1], Collections.singletonList("9198\"76<5>4"));
+    mobilesByText.put(TEXTS[2], Collections.singletonList("\u2028\u0001\u00E9"));
+    assertEquals(gsonBody("S<&>'=\"", "4", null, mobilesByText), toString(encoder.encodePost(mobilesByText)));
+  }
+
+  @Test
+  public void getMatchesConcatenatedUrl() throws Exception {
+    Msg91RequestEncoder encoder = new Msg91RequestEncoder(GET_URL, "SUNBRD", "4", "91", "key");
+    for (String text : TEXTS) {
+      String expected = GET_URL + "sender=SUNBRD&route=4&mobiles=919876543210&authkey=key&country=91&message="
+          + URLEncoder.encode(text, "UTF-8");
+      assertEquals(expected, encoder.encodeGet("919876543210", text));
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.sunbird.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+  @Test
+  public void addedValuesAreAlwaysFound() {
+    BloomFilter filter = BloomFilter.create(100000, 0.01);
+    for (int i = 0; i < 100000; i++) {
+      filter.put("98" + (10000000 + i));
+    }
+    for (int i = 0; i < 100000; i++) {
+      assertTrue(filter.mightContain("98" + (10000000 + i)));
+    }
+  }
+
+  @Test
+  public void falsePositiveRateStaysNearTheConfiguredRate() {
+    BloomFilter filter = BloomFilter.create(100000, 0.01);
+    for (int i = 0; i < 100000; i++) {
+      filter.put("user" + i + "@example.com");
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (filter.mightContain("other" + i + "@example.com")) {
+        falsePositives++;
+      }
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < 1500);
+  }
+
+  @Test
+  public void emptyFilterContainsNothing() {
+    BloomFilter filter = BloomFilter.create(1000, 0.001);
+    assertFalse(filter.mightContain(""));
+    assertFalse(filter.mightContain("9876543210"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidFalsePositiveRate() {
+    BloomFilter.create(1000, 1.0);
+  }
+}
@@ -0,0 +1,71 @@
+package org.sunbird.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LockoutTableTest {
+
+  private static final long TTL = 60000L;
+
+  @Test
+  public void lockedKeysOutliveNewKeys() {
+    LockoutTable<Failures> table = new LockoutTable<>(3, failures -> failures.lockedUntil);
+    long now = 1000L;
+    table.update("locked", current -> new Failures(5, now, now + TTL), now, TTL);
+    for (int i = 0; i < 1000; i++) {
+      String key = "guess" + i;
+      table.update(key, current -> new Failures(1, now, 0L), now, TTL);
+    }
+    assertEquals(3, table.size());
+    assertNotNull(table.get("locked", now));
+    assertNotNull(table.get("guess999", now));
+    assertNull(table.get("guess0", now));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUpdatedKeyFirst() {
+    LockoutTable<Failures> table = new LockoutTable<>(2, failures -> failures.lockedUntil);
+    long now = 1000L;
+    table.update("a", current -> new Failures(1, now, 0L), now, TTL);
+    table.update("b", current -> new Failures(1, now, 0L), now, TTL);
+    table.update("a", current -> new Failures(current.count + 1, now, 0L), now, TTL);
+    table.update("c", current -> new Failures(1, now, 0L), now, TTL);
+    assertEquals(2, table.get("a", now).count);
+    assertNull(table.get("b", now));
+    assertNotNull(table.get("c", now));
+  }
+
+  @Test
+  public void expiredEntriesAreSweptOnUpdate() {
+    LockoutTable<Failures> table = new LockoutTable<>(100, failures -> failures.lockedUntil);
+    table.update("old", current -> new Failures(1, 0L, 0L), 0L, TTL);
+    table.update("locked", current -> new Failures(5, 0L, 10L), 0L, 1L);
+    assertNull(table.get("old", TTL));
+    table.update("new", current -> new Failures(1, TTL, 0L), TTL, TTL);
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void expiredFailuresAreNotPassedOn() {
+    LockoutTable<Failures> table = new LockoutTable<>(100, failures -> failures.lockedUntil);
+    table.update("a", current -> new Failures(3, 0L, 0L), 0L, TTL);
+    Failures failures = table.update("a",
+        current -> new Failures(current == null ? 1 : current.count + 1, TTL, 0L), TTL, TTL);
+    assertEquals(1, failures.count);
+    table.remove("a");
+    assertNull(table.get("a", TTL));
+  }
+
+  private static class Failures {
+    private final int count;
+    private final long lockedUntil;
+
+    Failures(int count, long firstFailureAt, long lockedUntil) {
+      this.count = count;
+      this.lockedUntil = lockedUntil;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package org.sunbird.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+
+  @Test
+  public void putReplacesAndReturnsPreviousValue() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    assertNull(map.put(19876543210L, "a"));
+    assertEquals("a", map.put(19876543210L, "b"));
+    assertEquals("b", map.get(19876543210L));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  public void entriesSurviveGrowth() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    for (long i = 0; i < 10000; i++) {
+      map.put(i << 32, "v" + i);
+    }
+    assertEquals(10000, map.size());
+    for (long i = 0; i < 10000; i++) {
+      assertEquals("v" + i, map.get(i << 32));
+    }
+    assertNull(map.get(1L));
+  }
+
+  @Test
+  public void removeKeepsCollidingEntriesReachable() {
+    LongObjectHashMap<Integer> map = new LongObjectHashMap<>();
+    Map<Long, Integer> expected = new HashMap<>();
+    Random random = new Random(7);
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(2000);
+      if (random.nextBoolean()) {
+        assertEquals(expected.put(key, i), map.put(key, i));
+      } else {
+        assertEquals(expected.remove(key), map.remove(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    for (long key = 0; key < 2000; key++) {
+      assertEquals(expected.get(key), map.get(key));
+    }
+  }
+
+  @Test
+  public void clearRemovesEverything() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    map.put(0L, "zero");
+    map.put(-1L, "minus one");
+    map.clear();
+    assertEquals(0, map.size());
+    assertNull(map.get(0L));
+    assertNull(map.get(-1L));
+  }
+}